@@ -0,0 +1,242 @@
+package com.example;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Anti-entropy for the facts the control topics broadcast only once: which role a PID announced and
+// whether it died. This node keeps one versioned entry per PID. A role announcement is versioned by the
+// subject's seq, which starts from its start time in microseconds, so it keeps growing across restarts.
+// A death or revival seen here is stamped with the local clock in the same unit. That puts it after
+// everything the dead process announced and before anything a restarted one will.
+// Every period a node sends one random peer a DIGEST: its entries hashed and summed into 16 buckets,
+// whatever the cluster size. The peer answers only if buckets differ. It sends its entries of those
+// buckets as DELTA messages, plus a DIGEST back so the first node pushes its side too. The higher
+// version wins. A node that missed a DEAD or ROLE_CHANGE catches up within a few periods instead of
+// diverging until the next election.
+public class AntiEntropy {
+    public static final int BUCKETS = Message.MAX_HASHES;
+
+    private static final class Version {
+        final int pid;
+        long version;
+        int term;
+        boolean dead;
+
+        Version(int pid) {
+            this.pid = pid;
+        }
+    }
+
+    private final ProcessNode node;
+    private final IntMap<Version> versions = new IntMap<>();
+    private volatile long period = 5000;
+    private long nextSync;
+    // tick only
+    private final Message out = new Message();
+    private final long[] outHashes = new long[BUCKETS];
+    // handleDigest only
+    private final Message reply = new Message();
+    private final long[] mine = new long[BUCKETS];
+    private final AtomicLong repairs = new AtomicLong();
+
+    public AntiEntropy(ProcessNode node) {
+        this.node = node;
+    }
+
+    // how often to send a digest, 0 to only answer other nodes' digests
+    public void setPeriod(long period) {
+        this.period = period;
+    }
+
+    public long getPeriod() {
+        return period;
+    }
+
+    // entries this node took from a peer's DELTA
+    public long getRepairs() {
+        return repairs.get();
+    }
+
+    private Version entry(int pid) {
+        Version v = versions.get(pid);
+        if (v == null) {
+            v = versions.computeIfAbsent(pid, Version::new);
+        }
+        return v;
+    }
+
+    // pid announced its role in term with this seq; false if a newer fact about pid is already known
+    public boolean record(int pid, long version, int term) {
+        return record(pid, version, term, false);
+    }
+
+    private boolean record(int pid, long version, int term, boolean dead) {
+        Version v = entry(pid);
+        synchronized (v) {
+            if (version <= v.version) {
+                return false;
+            }
+            v.version = version;
+            v.term = term;
+            v.dead = dead;
+            return true;
+        }
+    }
+
+    // membership saw pid die or come back; a no-op if the entry already says so (e.g. it came from a DELTA)
+    void memberChanged(int pid, boolean dead, long now) {
+        Version v = entry(pid);
+        synchronized (v) {
+            if (v.dead != dead) {
+                v.dead = dead;
+                v.version = Math.max(v.version + 1, now * 1000);
+            }
+        }
+    }
+
+    // called by the detector every round, returns when the next digest is due
+    public long tick(long now) {
+        long p = period;
+        if (p <= 0) {
+            return Long.MAX_VALUE;
+        }
+        if (nextSync == 0) {
+            // not in the first period, the view is still filling up
+            nextSync = now + p;
+        }
+        if (now < nextSync) {
+            return nextSync;
+        }
+        nextSync = now + p;
+        int peer = randomPeer();
+        if (peer >= 0) {
+            digest(outHashes);
+            out.reset(MessageType.DIGEST, node.getPid()).setSubject(0);
+            for (long h : outHashes) {
+                out.addHash(h);
+            }
+            node.send(ProcessNode.inboxTopic(peer), out);
+        }
+        return nextSync;
+    }
+
+    // from the published view's sorted copy, taken once per digest; it may lag the table by one batch
+    private int randomPeer() {
+        int[] alive = node.getClusterView().getAlive();
+        int self = Arrays.binarySearch(alive, node.getPid());
+        int others = self >= 0 ? alive.length - 1 : alive.length;
+        if (others <= 0) {
+            return -1;
+        }
+        int i = node.getRandom().nextInt(others);
+        return self >= 0 && i >= self ? alive[i + 1] : alive[i];
+    }
+
+    // DIGEST from a peer: send it the entries of every bucket that differs, and a digest back so it
+    // does the same unless this already is the answer (subject 1)
+    public synchronized void handleDigest(Message msg) {
+        int peer = msg.getPid();
+        if (peer == node.getPid() || msg.getHashCount() != BUCKETS) {
+            return;
+        }
+        digest(mine);
+        int differ = 0;
+        for (int b = 0; b < BUCKETS; b++) {
+            if (mine[b] != msg.getHash(b)) {
+                differ |= 1 << b;
+            }
+        }
+        if (differ == 0) {
+            return;
+        }
+        String inbox = ProcessNode.inboxTopic(peer);
+        Iterator<Version> it = versions.values();
+        while (it.hasNext()) {
+            Version v = it.next();
+            if ((differ & (1 << bucket(v.pid))) == 0) {
+                continue;
+            }
+            Role role = Role.fromLabel(node.getRoleMap().getOrDefault(v.pid, "Follower"));
+            synchronized (v) {
+                reply.reset(MessageType.DELTA, node.getPid()).setSubject(v.pid).setRole(role)
+                        .setState(v.dead ? MemberState.DEAD : MemberState.ALIVE).setVersion(v.version)
+                        .setSubjectTerm(v.term);
+            }
+            node.send(inbox, reply);
+        }
+        if (msg.getSubject() == 0) {
+            reply.reset(MessageType.DIGEST, node.getPid()).setSubject(1);
+            for (long h : mine) {
+                reply.addHash(h);
+            }
+            node.send(inbox, reply);
+        }
+    }
+
+    // DELTA from a peer: fills fact with the DEAD or ROLE_CHANGE this node missed and returns true, for
+    // the Listener to handle as if it had come from the subject; false if this node already knows as much
+    public boolean handleDelta(Message msg, Message fact) {
+        int pid = msg.getSubject();
+        if (pid == node.getPid()) {
+            // nobody knows this node's role better than itself
+            return false;
+        }
+        boolean dead = msg.getState() == MemberState.DEAD;
+        // recorded first, so the membership change the fact causes does not stamp a version of its own,
+        // and even if the fact is then dropped (a role from an older term): it is known and superseded
+        if (!record(pid, msg.getVersion(), msg.getSubjectTerm(), dead)) {
+            return false;
+        }
+        MembershipTable members = node.getMembership();
+        if (dead) {
+            if (members.isDead(pid)) {
+                // only a later stamp of a death this node knows of
+                return false;
+            }
+            repaired(msg, true);
+            fact.reset(MessageType.DEAD, msg.getPid()).setSubject(pid).setRole(msg.getRole())
+                    .setTerm(node.getTerm());
+            return true;
+        }
+        if (members.isDead(pid)) {
+            // announced after the death this node knows of: the PID was restarted
+            members.removeDead(pid);
+        }
+        repaired(msg, false);
+        fact.reset(MessageType.ROLE_CHANGE, pid).setRole(msg.getRole()).setSeq(msg.getVersion())
+                .setTerm(msg.getSubjectTerm());
+        return true;
+    }
+
+    private void repaired(Message msg, boolean dead) {
+        repairs.incrementAndGet();
+        node.event(EventType.VIEW_REPAIRED, msg.getSubject(), msg.getRole(), msg.getPid(), dead ? 1 : 0, 0, 0, 0);
+    }
+
+    // per bucket, the sum of the entry hashes: independent of iteration order and cheap to compare
+    private void digest(long[] into) {
+        Arrays.fill(into, 0);
+        Iterator<Version> it = versions.values();
+        while (it.hasNext()) {
+            Version v = it.next();
+            synchronized (v) {
+                into[bucket(v.pid)] += hash(v.pid, v.dead, v.version);
+            }
+        }
+    }
+
+    // roles are not hashed: a role another node only inferred (e.g. from NEW_DEPUTY2) has no version of
+    // its own, and two inferences at the same version could never be reconciled
+    private static long hash(int pid, boolean dead, long version) {
+        long h = pid * 0x9E3779B97F4A7C15L + version;
+        h = (h ^ (h >>> 33)) * 0xFF51AFD7ED558CCDL;
+        h = (h ^ (h >>> 33)) * 0xC4CEB9FE1A85EC53L;
+        h ^= h >>> 33;
+        return dead ? ~h : h;
+    }
+
+    private static int bucket(int pid) {
+        return (pid * 0x9E3779B9) >>> 28;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,10 @@
+package com.example;
+
+// Time source of a node. Components read the time only through here so a Simulation can run a whole
+// cluster on virtual time; outside a simulation it is the system clock. Latency metrics keep using
+// System.nanoTime(), they measure real processing cost either way.
+public interface Clock {
+    Clock SYSTEM = System::currentTimeMillis;
+
+    long millis();
+}
\ No newline at end of file
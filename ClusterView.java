@@ -0,0 +1,146 @@
+package com.example;
+
+import java.util.*;
+
+// Immutable snapshot of what one node knows about the cluster: members, roles, leaders and term, all
+// taken together (not the lease, ProcessNode.currentLeader() already answers that in O(1)).
+// ProcessNode.publishView() builds a new one after each batch of changes and swaps it in with a single
+// volatile write, so getClusterView() is one read with no locks and never sees an election half applied
+// (e.g. an empty BossList while the new one is being put together).
+public final class ClusterView {
+    private final long version;
+    private final long createdAt;
+    private final int pid;
+    private final Role role;
+    private final int term;
+    private final int[] alive;
+    private final int[] dead;
+    private final Map<Integer, Role> roles;
+    private final LeadershipTable.Snapshot leaders;
+
+    ClusterView(long version, long createdAt, int pid, Role role, int term, int[] alive, int[] dead,
+            Map<Integer, Role> roles, LeadershipTable.Snapshot leaders) {
+        this.version = version;
+        this.createdAt = createdAt;
+        this.pid = pid;
+        this.role = role;
+        this.term = term;
+        this.alive = alive;
+        this.dead = dead;
+        this.roles = Collections.unmodifiableMap(roles);
+        this.leaders = leaders;
+    }
+
+    // bumped on every publish of this node's view
+    public long getVersion() {
+        return version;
+    }
+
+    public long getCreatedAt() {
+        return createdAt;
+    }
+
+    // the node this view belongs to
+    public int getPid() {
+        return pid;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public int getTerm() {
+        return term;
+    }
+
+    // sorted
+    public int[] getAlive() {
+        return alive.clone();
+    }
+
+    // sorted
+    public int[] getDead() {
+        return dead.clone();
+    }
+
+    public int aliveCount() {
+        return alive.length;
+    }
+
+    public boolean isAlive(int p) {
+        return Arrays.binarySearch(alive, p) >= 0;
+    }
+
+    public boolean isDead(int p) {
+        return Arrays.binarySearch(dead, p) >= 0;
+    }
+
+    public Map<Integer, Role> getRoles() {
+        return roles;
+    }
+
+    public Role roleOf(int p) {
+        return roles.getOrDefault(p, Role.FOLLOWER);
+    }
+
+    public LeadershipTable.Snapshot getLeaders() {
+        return leaders;
+    }
+
+    // alive Boss in the leadership table, -1 if there is none
+    public int getBoss() {
+        LeadershipTable.Entry boss = leaders.byRole(Role.BOSS);
+        return boss != null && boss.isAlive() ? boss.getPid() : -1;
+    }
+
+    public String toJson() {
+        StringBuilder s = new StringBuilder(128 + 16 * (alive.length + dead.length + roles.size()));
+        s.append("{\"version\":").append(version)
+                .append(",\"createdAt\":").append(createdAt)
+                .append(",\"pid\":").append(pid)
+                .append(",\"role\":\"").append(role.label())
+                .append("\",\"term\":").append(term)
+                .append(",\"boss\":").append(getBoss())
+                .append(",\"alive\":");
+        appendArray(s, alive);
+        s.append(",\"dead\":");
+        appendArray(s, dead);
+        s.append(",\"roles\":{");
+        boolean first = true;
+        for (Map.Entry<Integer, Role> e : new TreeMap<>(roles).entrySet()) {
+            if (!first) {
+                s.append(',');
+            }
+            first = false;
+            s.append('"').append(e.getKey()).append("\":\"").append(e.getValue().label()).append('"');
+        }
+        s.append("},\"leaders\":[");
+        for (int i = 0; i < leaders.size(); i++) {
+            LeadershipTable.Entry e = leaders.get(i);
+            if (i > 0) {
+                s.append(',');
+            }
+            s.append("{\"pid\":").append(e.getPid())
+                    .append(",\"role\":\"").append(e.getRole().label())
+                    .append("\",\"alive\":").append(e.isAlive()).append('}');
+        }
+        return s.append("]}").toString();
+    }
+
+    private static void appendArray(StringBuilder s, int[] pids) {
+        s.append('[');
+        for (int i = 0; i < pids.length; i++) {
+            if (i > 0) {
+                s.append(',');
+            }
+            s.append(pids[i]);
+        }
+        s.append(']');
+    }
+
+    @Override
+    public String toString() {
+        return "ClusterView{v" + version + " pid=" + pid + " " + role.label() + " term=" + term + " alive="
+                + Arrays.toString(alive) + " leaders=" + leaders + "}";
+    }
+}
\ No newline at end of file
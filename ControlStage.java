@@ -0,0 +1,101 @@
+package com.example;
+
+import java.util.concurrent.locks.LockSupport;
+
+// Serialized stage for control messages (death, role change, election, promotion).
+// The Listener's poll loop copies them in and goes straight back to polling; this stage handles
+// them one at a time in arrival order, on its own thread or as a NodeExecutor task.
+class ControlStage extends Thread implements NodeExecutor.Step {
+    private final MessageRing queue;
+    private final Transport.Handler handler;
+    private final NodeMetrics metrics;
+    private final Clock clock;
+    private final Transport.Handler timed = this::handle;
+    private volatile boolean running = true;
+    private volatile Thread waiter;
+    private volatile NodeExecutor.Task task;
+
+    ControlStage(String name, Transport.Handler handler, NodeMetrics metrics, Clock clock, int capacity) {
+        super(name);
+        this.queue = new MessageRing(capacity);
+        this.handler = handler;
+        this.metrics = metrics;
+        this.clock = clock;
+    }
+
+    // called by the polling thread only; false if the stage was full. Then the polling thread waits for room
+    // by draining the stage itself, older messages first, so msg is never handled ahead of them. Polling
+    // stops meanwhile (backpressure); waiting for the stage's own task could deadlock a single-threaded
+    // executor such as Simulation's.
+    boolean offer(String topic, Message msg) {
+        boolean room = queue.offer(topic, msg);
+        if (!room) {
+            drain();
+            // empty now, and only this thread offers
+            queue.offer(topic, msg);
+        }
+        NodeExecutor.Task t = task;
+        if (t != null) {
+            t.wake(clock.millis());
+        } else {
+            Thread w = waiter;
+            if (w != null) {
+                LockSupport.unpark(w);
+            }
+        }
+        return room;
+    }
+
+    // the queue has a single consumer at a time: the stage, or the polling thread when the stage is full
+    private synchronized int drain() {
+        return queue.drain(timed);
+    }
+
+    private void handle(String topic, Message msg) {
+        handler.onMessage(topic, msg);
+        metrics.recordControlStage(System.nanoTime() - msg.getReceivedAt());
+    }
+
+    @Override
+    public void run() {
+        while (running) {
+            if (drain() > 0) {
+                continue;
+            }
+            waiter = Thread.currentThread();
+            // re-check after publishing waiter so a concurrent offer() is not missed
+            if (queue.isEmpty() && running) {
+                LockSupport.park(this);
+            }
+            waiter = null;
+            if (Thread.interrupted()) {
+                running = false;
+            }
+        }
+    }
+
+    public void start(NodeExecutor executor) {
+        task = executor.submit(getName(), this);
+    }
+
+    @Override
+    public long step(long now) {
+        drain();
+        // idle until offer() wakes the task
+        return Long.MAX_VALUE;
+    }
+
+    @Override
+    public void stopped() {
+    }
+
+    public void shutdown() {
+        running = false;
+        NodeExecutor.Task t = task;
+        if (t != null) {
+            t.cancel();
+        } else {
+            this.interrupt();
+        }
+    }
+}
\ No newline at end of file
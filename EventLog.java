@@ -0,0 +1,411 @@
+package com.example;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+// Structured event log that keeps console and file I/O off the detector threads.
+// emit() copies the event's fields into a preallocated slot of a lock-free MPSC ring (same scheme as
+// MessageRing) and returns; it never blocks and never allocates. A background writer drains the ring into
+// a rolling JSON-lines file and/or echoes a readable line to System.out. Each EventType is rate limited
+// per second; events over the limit, or that find the ring full, are counted and reported by the writer.
+public final class EventLog implements AutoCloseable {
+    private static final class Slot {
+        volatile long seq;
+        EventType type;
+        long time;
+        int node;
+        int subject;
+        Role role;
+        int term;
+        int a;
+        int b;
+        int c;
+        int d;
+        double score;
+    }
+
+    private static final EventType[] TYPES = EventType.values();
+    // low bits of a rate window hold the count, the rest the second it counts for
+    private static final int COUNT_BITS = 20;
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    private final AtomicLongArray windows = new AtomicLongArray(TYPES.length);
+    private final int[] limits = new int[TYPES.length];
+    private final AtomicLongArray suppressed = new AtomicLongArray(TYPES.length);
+    private final AtomicLong dropped = new AtomicLong();
+
+    private final Path file;
+    private final long maxBytes;
+    private final int maxFiles;
+    private final boolean echo;
+    private final Thread writer;
+    private volatile boolean running = true;
+    // writer thread only
+    private BufferedWriter out;
+    private long written;
+    private final StringBuilder line = new StringBuilder(256);
+
+    // file may be null (console only); it rolls over to file.1 .. file.<maxFiles-1> past maxBytes
+    public EventLog(int capacity, Path file, long maxBytes, int maxFiles, boolean echo) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            slots[i].seq = i;
+        }
+        for (EventType type : TYPES) {
+            limits[type.ordinal()] = type.limitPerSecond();
+        }
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.maxFiles = Math.max(1, maxFiles);
+        this.echo = echo;
+        if (file == null && !echo) {
+            // nowhere to write, emit() drops everything
+            this.writer = null;
+            running = false;
+            return;
+        }
+        this.writer = new Thread(this::run, "event-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    private static final class Console {
+        static final EventLog INSTANCE = new EventLog(8192, null, 0, 0, true);
+    }
+
+    // shared console-only log, what a ProcessNode uses unless given another one
+    public static EventLog console() {
+        return Console.INSTANCE;
+    }
+
+    // a log that keeps nothing, e.g. for quiet simulation runs
+    public static EventLog discard() {
+        return new EventLog(2, null, 0, 0, false);
+    }
+
+    public void setRateLimit(EventType type, int perSecond) {
+        limits[type.ordinal()] = perSecond;
+    }
+
+    public boolean emit(EventType type, long time, int node, int subject, Role role) {
+        return emit(type, time, node, subject, role, 0, 0, 0, 0, 0, 0);
+    }
+
+    // false if the event was rate limited, found the ring full, or the log is closed
+    public boolean emit(EventType type, long time, int node, int subject, Role role, int term,
+            int a, int b, int c, int d, double score) {
+        if (!running || !admit(type, time)) {
+            return false;
+        }
+        long t;
+        Slot slot;
+        while (true) {
+            t = tail.get();
+            slot = slots[(int) (t & mask)];
+            long diff = slot.seq - t;
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                dropped.incrementAndGet();
+                return false;
+            }
+        }
+        slot.type = type;
+        slot.time = time;
+        slot.node = node;
+        slot.subject = subject;
+        slot.role = role;
+        slot.term = term;
+        slot.a = a;
+        slot.b = b;
+        slot.c = c;
+        slot.d = d;
+        slot.score = score;
+        slot.seq = t + 1;
+        return true;
+    }
+
+    // fixed one-second window per type, a single CAS on the common path
+    private boolean admit(EventType type, long time) {
+        int i = type.ordinal();
+        long second = time / 1000;
+        while (true) {
+            long w = windows.get(i);
+            long count = w & ((1L << COUNT_BITS) - 1);
+            if (w >>> COUNT_BITS == second) {
+                if (count >= limits[i]) {
+                    suppressed.incrementAndGet(i);
+                    return false;
+                }
+                if (windows.compareAndSet(i, w, w + 1)) {
+                    return true;
+                }
+            } else if (windows.compareAndSet(i, w, (second << COUNT_BITS) | 1)) {
+                return true;
+            }
+        }
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    // writes out what is queued and stops the writer; later events are dropped
+    @Override
+    public void close() {
+        if (writer == null || !running) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        try {
+            if (file != null) {
+                open();
+            }
+            while (true) {
+                int n = drain();
+                report();
+                if (n == 0) {
+                    if (out != null) {
+                        out.flush();
+                    }
+                    if (!running && slots[(int) (head & mask)].seq != head + 1) {
+                        break;
+                    }
+                    LockSupport.parkNanos(this, 10_000_000L);
+                }
+            }
+            if (out != null) {
+                out.close();
+            }
+        } catch (IOException e) {
+            System.err.println("Event log " + file + " stopped: " + e.getMessage());
+            running = false;
+        }
+    }
+
+    private int drain() throws IOException {
+        int count = 0;
+        long h = head;
+        while (true) {
+            Slot slot = slots[(int) (h & mask)];
+            if (slot.seq != h + 1) {
+                break;
+            }
+            write(slot);
+            slot.role = null;
+            slot.seq = h + slots.length;
+            h++;
+            head = h;
+            count++;
+        }
+        return count;
+    }
+
+    private void write(Slot e) throws IOException {
+        if (out != null) {
+            line.setLength(0);
+            line.append("{\"time\":").append(e.time)
+                    .append(",\"node\":").append(e.node)
+                    .append(",\"type\":\"").append(e.type.name())
+                    .append("\",\"subject\":").append(e.subject)
+                    .append(",\"role\":");
+            if (e.role == null) {
+                line.append("null");
+            } else {
+                line.append('"').append(e.role.label()).append('"');
+            }
+            line.append(",\"term\":").append(e.term)
+                    .append(",\"a\":").append(e.a)
+                    .append(",\"b\":").append(e.b)
+                    .append(",\"c\":").append(e.c)
+                    .append(",\"d\":").append(e.d)
+                    .append(",\"score\":").append(e.score)
+                    .append("}\n");
+            append(line);
+        }
+        if (echo) {
+            line.setLength(0);
+            text(e, line);
+            System.out.println(line);
+        }
+    }
+
+    // readable line, worded like the console output the components used to print themselves
+    private static void text(Slot e, StringBuilder s) {
+        switch (e.type) {
+            case STATUS:
+                s.append("PID: ").append(e.node).append("(Boss) alive=").append(e.a).append(" dead=").append(e.b)
+                        .append(" Boss=").append(e.subject).append(" D1=").append(e.c).append(" D2=").append(e.d);
+                break;
+            case SUSPECT:
+                s.append("Process ").append(e.node).append(" said Process ").append(e.subject)
+                        .append(" suspected, probing");
+                if (e.a > 0 || e.b > 0) {
+                    s.append(" (link loss ").append(e.a).append("%, queueing ").append(e.b).append(" ms)");
+                }
+                break;
+            case DEATH:
+                s.append("Process ").append(e.node).append(" said Process ").append(e.subject).append(" (")
+                        .append(label(e.role)).append(") died");
+                break;
+            case DEATH_RECEIVED:
+                s.append("Process ").append(e.node).append(" said Death received: PID=").append(e.subject)
+                        .append(" Role=").append(label(e.role));
+                break;
+            case ROLE_CHANGE:
+                s.append("Process ").append(e.node).append(" said Role change: PID=").append(e.subject)
+                        .append(" -> ").append(label(e.role));
+                break;
+            case ELECTION_STARTED:
+                s.append("Process ").append(e.node).append(" sent score ").append(e.score).append(" for term ")
+                        .append(e.term);
+                break;
+            case ELECTION_TRIGGERED:
+                s.append("Process ").append(e.node).append(" said ");
+                if (e.a == 2) {
+                    s.append("Conflicting Boss PID=").append(e.subject);
+                } else {
+                    s.append(e.a == 0 ? "No leaders alive" : "BossList is empty");
+                }
+                s.append(", starting election for term ").append(e.term);
+                break;
+            case ELECTION_RESULT:
+                s.append("Process ").append(e.node).append(" said Election complete! Term=").append(e.term)
+                        .append(" Boss=").append(e.subject).append(" D1=").append(e.c).append(" D2=").append(e.d)
+                        .append(" (").append(e.a).append(" scores)");
+                break;
+            case PROMOTION:
+                s.append("Process ").append(e.node).append(" promoted to ").append(label(e.role));
+                break;
+            case DEPUTY2_CANDIDATE:
+                s.append("Process ").append(e.node).append(" sent Deputy2 candidate score: ").append(e.score);
+                break;
+            case DEPUTY2_VOTES:
+                s.append("Process ").append(e.node).append(" Deputy2 election status: ").append(e.a).append('/')
+                        .append(e.b).append(" candidates");
+                break;
+            case DEPUTY2_ELECTED:
+                s.append("Process ").append(e.node).append(e.a == 1 ? " acknowledged" : " elected")
+                        .append(" new Deputy2: PID ").append(e.subject);
+                break;
+            case LAST_ALIVE:
+                s.append("Process ").append(e.node).append(" said Alert: Only one process left alive.");
+                break;
+            case SEND_FAILURE:
+                s.append("Process ").append(e.node).append(" failed to send heartbeat");
+                break;
+            case VIEW_REPAIRED:
+                s.append("Process ").append(e.node).append(" caught up from Process ").append(e.a).append(": PID=")
+                        .append(e.subject).append(e.b == 1 ? " died" : " is " + label(e.role));
+                break;
+            case RING_CHANGED:
+                s.append("Process ").append(e.node).append(" monitors [");
+                if (e.a > 0) {
+                    s.append(e.subject);
+                }
+                if (e.a > 1) {
+                    s.append(", ").append(e.c);
+                }
+                if (e.a > 2) {
+                    s.append(", ").append(e.d);
+                }
+                if (e.a > 3) {
+                    s.append(", ").append(e.a - 3).append(" more");
+                }
+                s.append(']');
+                break;
+            default:
+                s.append(e.type).append(" node=").append(e.node).append(" subject=").append(e.subject);
+                break;
+        }
+    }
+
+    private static String label(Role role) {
+        return role == null ? "?" : role.label();
+    }
+
+    // what the rate limits and a full ring cost since the last report
+    private void report() throws IOException {
+        for (EventType type : TYPES) {
+            long n = suppressed.getAndSet(type.ordinal(), 0);
+            if (n > 0) {
+                note(type.name(), n, "suppressed");
+            }
+        }
+        long n = dropped.getAndSet(0);
+        if (n > 0) {
+            note("ALL", n, "dropped");
+        }
+    }
+
+    private void note(String type, long count, String what) throws IOException {
+        if (out != null) {
+            line.setLength(0);
+            line.append("{\"type\":\"").append(what.toUpperCase()).append("\",\"event\":\"").append(type)
+                    .append("\",\"count\":").append(count).append("}\n");
+            append(line);
+        }
+        if (echo) {
+            System.out.println("(" + count + " " + type + " events " + what + ")");
+        }
+    }
+
+    private void append(CharSequence s) throws IOException {
+        if (written + s.length() > maxBytes && written > 0) {
+            roll();
+        }
+        out.append(s);
+        written += s.length();
+    }
+
+    private void open() throws IOException {
+        out = Files.newBufferedWriter(file, StandardCharsets.UTF_8, StandardOpenOption.CREATE,
+                StandardOpenOption.APPEND);
+        written = Files.size(file);
+    }
+
+    // file -> file.1 -> ... -> file.<maxFiles-1>, the oldest is overwritten
+    private void roll() throws IOException {
+        out.close();
+        for (int i = maxFiles - 1; i >= 1; i--) {
+            Path from = i == 1 ? file : sibling(i - 1);
+            if (Files.exists(from)) {
+                Files.move(from, sibling(i), StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+        if (maxFiles == 1) {
+            Files.delete(file);
+        }
+        open();
+    }
+
+    private Path sibling(int index) {
+        return file.resolveSibling(file.getFileName() + "." + index);
+    }
+}
\ No newline at end of file
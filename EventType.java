@@ -0,0 +1,48 @@
+package com.example;
+
+// Typed entries of the EventLog, with the default number of each type let through per second
+// (the rest are counted and reported as suppressed).
+public enum EventType {
+    // the Boss's periodic view: a=alive, b=dead, subject/c/d = Boss/Deputy1/Deputy2
+    STATUS(10),
+    // subject suspected, a probe is on its way
+    SUSPECT(100),
+    // subject (role) declared dead by this node
+    DEATH(100),
+    // subject (role) declared dead by another node
+    DEATH_RECEIVED(100),
+    // subject now has role
+    ROLE_CHANGE(100),
+    // this node opened a round for term with score
+    ELECTION_STARTED(100),
+    // reason a: 0 no leaders alive, 1 empty BossList, 2 conflicting Boss subject
+    ELECTION_TRIGGERED(100),
+    // term resolved with a scores: subject/c/d = Boss/Deputy1/Deputy2
+    ELECTION_RESULT(100),
+    // this node moved up to role
+    PROMOTION(100),
+    // this node bid score for Deputy2
+    DEPUTY2_CANDIDATE(100),
+    // a of b candidates have bid
+    DEPUTY2_VOTES(20),
+    // subject is the new Deputy2 (a = 1 when only acknowledged)
+    DEPUTY2_ELECTED(100),
+    // this node is the only one left
+    LAST_ALIVE(1),
+    // a heartbeat could not be sent
+    SEND_FAILURE(1),
+    // anti-entropy: took subject's death (b = 1) or role from node a's view
+    VIEW_REPAIRED(100),
+    // ring mode: this node now monitors a successors, the first ones subject/c/d
+    RING_CHANGED(10);
+
+    private final int limitPerSecond;
+
+    EventType(int limitPerSecond) {
+        this.limitPerSecond = limitPerSecond;
+    }
+
+    public int limitPerSecond() {
+        return limitPerSecond;
+    }
+}
\ No newline at end of file
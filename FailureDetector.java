@@ -2,102 +2,277 @@ package com.example;
 
 import java.util.*;
 
-public class FailureDetector extends Thread {
+public class FailureDetector extends Thread implements NodeExecutor.Step {
     private ProcessNode node;
     private final Listener listener;
     private volatile boolean running = true;
+    // set when running on a shared NodeExecutor instead of this thread
+    private volatile NodeExecutor.Task task;
+    private long nextLeadershipCheck = 0;
+    private long nextGossip = Long.MAX_VALUE;
+    // 0 while this node is not the Boss, so a new Boss renews in its first round
+    private long nextLeaseRenewal = 0;
+    private final Message lease;
+    // ring mode: the successor set monitoring was last started for (guarded by this)
+    private int[] monitored;
 
     public FailureDetector(ProcessNode node, Listener listener) {
         this.node = node;
         this.listener = listener;
+        this.lease = new Message(MessageType.LEASE, node.getPid());
     }
 
     @Override
     public void run() {
+        prepare();
         try {
             while (running) {
-                long now = System.currentTimeMillis();
-
-                // ตรวจสอบ heartbeat timeout ก่อน
-                for (Map.Entry<Integer, Long> entry : new HashMap<>(listener.getHeartbeatMap()).entrySet()) {
-                    int pid = entry.getKey();
-                    long last = entry.getValue();
-
-                    if (now - last > 20000) {
-                        String deadRole = node.getRoleMap().getOrDefault(pid, "Follower");
-                        boolean isNewDeath = !node.getDeathList().contains(pid);
-                        if (isNewDeath) {
-                            System.out.println(
-                                    "Process " + node.getPid() + " said Process " + pid + " (" + deadRole + ") died");
-                        }
-
-                        node.getAliveList().remove((Integer) pid);
-                        if (!node.getDeathList().contains(pid)) {
-                            node.getDeathList().add(pid);
-                        }
-                        listener.getHeartbeatMap().remove(pid);
-
-                        // เรียก promote เพื่อจัดการการเลื่อนตำแหน่ง
-                        node.promote(pid, deadRole);
-                        node.announceDeath(pid, deadRole);
-                    }
-                }
+                listener.getDeadlines().await(round(node.getClock().millis()));
+            }
+        } catch (InterruptedException e) {
+            running = false;
+        }
+    }
+
+    // runs on a shared executor instead of this thread, shutdown() works the same way
+    public void start(NodeExecutor executor) {
+        prepare();
+        NodeExecutor.Task t = executor.submit("FailureDetector-" + node.getPid(), this);
+        task = t;
+        // an earlier deadline reschedules the task instead of unparking a thread
+        listener.getDeadlines().setWakeup(t::wake);
+    }
+
+    @Override
+    public long step(long now) {
+        return listener.getDeadlines().nextWake(round(now));
+    }
 
-                // ตรวจสอบ bossList และย้ายตัวที่ตายแล้วไปที่ deathList
-                List<String> toRemove = new ArrayList<>();
-                boolean hasDeadLeader = false; // เพิ่มตัวแปรเช็คว่ามี leader ตาย
-
-                for (String bossStr : node.getBossList()) {
-                    String[] parts = bossStr.split(":");
-                    if (parts.length < 3)
-                        continue;
-
-                    int bossPid = Integer.parseInt(parts[0]);
-                    String role = parts[1];
-                    String status = parts[2];
-
-                    // ถ้า pid อยู่ใน deathList หรือไม่มี heartbeat (ตาย)
-                    boolean isDead = node.getDeathList().contains(bossPid) ||
-                            !listener.getHeartbeatMap().containsKey(bossPid);
-
-                    if (isDead) {
-                        // System.out.println("Process " + node.getPid() + " said Moving dead " + role + " (PID: "
-                        //         + bossPid + ") from bossList to deathList");
-
-                        // เพิ่มใน deathList ถ้ายังไม่มี
-                        if (!node.getDeathList().contains(bossPid)) {
-                            node.getDeathList().add(bossPid);
-                        }
-
-                        // ตรวจสอบว่าเป็น leader role หรือไม่
-                        if (role.equals("Boss") || role.equals("Deputy1") || role.equals("Deputy2")) {
-                            hasDeadLeader = true;
-                            // เรียก promote เมื่อ leader ตาย
-                            node.promote(bossPid, role);
-                        }
-
-                        // เตรียมลบออกจาก bossList
-                        toRemove.add(bossStr);
-                    }
+    @Override
+    public void stopped() {
+        listener.getDeadlines().setWakeup(null);
+    }
+
+    private void prepare() {
+        listener.bootstrap();
+        GossipMembership gossip = listener.getGossip();
+        Prober prober = listener.getProber();
+        MonitorRing ring = listener.getRing();
+        if (ring != null) {
+            // a verdict from another node's monitors fails over here like a local one, without re-broadcast
+            monitored = ring.getSuccessors();
+            listener.setRemoteDeathHandler(pid -> declareDead(pid, false));
+            node.send(MonitorRing.JOIN_TOPIC, new Message(MessageType.JOIN, node.getPid()));
+        }
+        if (gossip == null) {
+            // phi only raises a suspicion, the prober has to confirm it before anyone fails over
+            prober.setCallback((pid, alive) -> {
+                if (!node.getMembership().clearSuspect(pid)) {
+                    return;
                 }
+                if (alive) {
+                    node.getMetrics().recordFalseSuspicion();
+                    listener.recordHeartbeat(pid, node.getClock().millis());
+                } else {
+                    declareDead(pid, true);
+                }
+            });
+        } else {
+            // gossip ประกาศการตายผ่าน piggyback อยู่แล้ว มีแค่ตัวที่ยืนยันเองที่ broadcast
+            gossip.setDeathHandler(this::declareDead);
+            gossip.start();
+            // give the join round one protocol period before looking for leaders
+            nextLeadershipCheck = node.getClock().millis() + gossip.getPeriodMillis();
+        }
+    }
 
-                // ลบรายการที่ตายแล้วออกจาก bossList
-                for (String item : toRemove) {
-                    node.getBossList().remove(item);
-                    // System.out.println("Removed from bossList: " + item);
+    // one pass of the detector loop, returns when the next pass is due (package-private for benchmarks/)
+    long round(long now) {
+        TimerWheel deadlines = listener.getDeadlines();
+        PhiAccrualDetector phi = listener.getPhiDetector();
+        GossipMembership gossip = listener.getGossip();
+        Prober prober = listener.getProber();
+
+        if (gossip != null) {
+            nextGossip = gossip.tick(now);
+        }
+        MonitorRing ring = listener.getRing();
+        if (ring != null) {
+            updateMonitored(ring, now);
+        }
+
+        // ตรวจสอบเฉพาะ PID ที่ deadline หมดแล้ว (ตัดสินจากระดับความสงสัย phi)
+        int expired = deadlines.expire(now);
+        for (int i = 0; i < expired; i++) {
+            int pid = deadlines.expiredPid(i);
+            if (ring != null && !ring.isMonitored(pid)) {
+                // no longer a successor, another node watches it now
+                continue;
+            }
+            if (phi.isSuspected(pid, now)) {
+                suspect(pid, now, prober);
+            } else if (!deadlines.isScheduled(pid)) {
+                // deadline rounded slightly early, or a heartbeat raced with expiry
+                long deadline = phi.suspicionDeadline(pid);
+                if (deadline >= 0) {
+                    deadlines.schedule(pid, Math.max(deadline, now + 1));
                 }
+            }
+        }
+
+        // after the sweep so probes started by it are covered
+        long nextProbe = prober.tick(now);
+
+        if (now >= nextLeadershipCheck) {
+            checkLeadership();
+            nextLeadershipCheck = now + 5000;
+        }
+
+        // an election round that has not heard from everyone resolves at its deadline
+        listener.checkElectionDeadline(now);
+        long electionDeadline = node.getElectionDeadline();
+        node.publishView();
+        long next = Math.min(nextLeadershipCheck, Math.min(nextGossip, nextProbe));
+        next = Math.min(next, renewLease(now));
+        next = Math.min(next, node.getAntiEntropy().tick(now));
+        return electionDeadline != 0 ? Math.min(next, electionDeadline) : next;
+    }
+
+    // ring mode: follow membership changes, start watching new successors and drop the rest
+    private synchronized void updateMonitored(MonitorRing ring, long now) {
+        ring.refresh();
+        int[] successors = ring.getSuccessors();
+        if (successors == monitored) {
+            return;
+        }
+        for (int pid : monitored) {
+            if (!ring.isMonitored(pid)) {
+                listener.stopMonitoring(pid);
+            }
+        }
+        for (int pid : successors) {
+            if (!contains(monitored, pid)) {
+                listener.startMonitoring(pid, now);
+            }
+        }
+        monitored = successors;
+        node.event(EventType.RING_CHANGED, successors.length > 0 ? successors[0] : 0, null, successors.length, 0,
+                successors.length > 1 ? successors[1] : 0, successors.length > 2 ? successors[2] : 0, 0);
+    }
+
+    private static boolean contains(int[] pids, int pid) {
+        for (int p : pids) {
+            if (p == pid) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // the Boss extends its lease on every node, returns when to renew again
+    private long renewLease(long now) {
+        if (!node.getRole().equals("Boss")) {
+            nextLeaseRenewal = 0;
+            return Long.MAX_VALUE;
+        }
+        if (now >= nextLeaseRenewal) {
+            long duration = node.getLeaseDuration();
+            // the holder's own lease starts at the send, so it never outlives the copies on other nodes
+            node.getLeadership().renewLease(node.getPid(), node.getTerm(), now + duration, now);
+            node.send("lease-topic", lease);
+            nextLeaseRenewal = now + duration / 3;
+        }
+        return nextLeaseRenewal;
+    }
+
+    private void suspect(int pid, long now, Prober prober) {
+        if (node.getMembership().isDead(pid) || !node.getMembership().markSuspect(pid)) {
+            return;
+        }
+        node.getMetrics().recordSuspicion();
+        // how the link to pid has been doing: lossy or slow pipe rather than a dead or slow process
+        LinkStats.Link link = listener.getLinks().get(pid);
+        if (link != null) {
+            node.event(EventType.SUSPECT, pid, null, (int) Math.round(link.getLossRate() * 100),
+                    (int) Math.round(link.getQueueingMillis()), (int) link.getReordered(), 0, 0);
+        } else {
+            node.event(EventType.SUSPECT, pid, null);
+        }
+        node.suspected(pid);
+        prober.probe(pid, now);
+    }
+
+    private void declareDead(int pid, boolean broadcast) {
+        String deadRole = node.getRoleMap().getOrDefault(pid, "Follower");
+        MembershipTable membership = node.getMembership();
+        boolean isNewDeath = !membership.isDead(pid);
+        if (isNewDeath) {
+            node.event(EventType.DEATH, pid, Role.fromLabel(deadRole));
+            long last = membership.lastHeartbeat(pid);
+            node.getMetrics().recordDeath(last == 0 ? -1 : node.getClock().millis() - last);
+        }
+
+        membership.removeAlive(pid);
+        membership.markDead(pid);
+        membership.clearHeartbeat(pid);
+        listener.getPhiDetector().remove(pid);
+
+        // announce first so peers learn of the death before the promotions it causes
+        if (broadcast) {
+            node.announceDeath(pid, deadRole);
+        }
+        // เรียก promote เพื่อจัดการการเลื่อนตำแหน่ง
+        node.promote(pid, deadRole);
+        if (!broadcast) {
+            node.getLeadership().retire(pid);
+        }
+        MonitorRing ring = listener.getRing();
+        if (ring != null) {
+            // the dead PID's successors need a new monitor now, not at the next round
+            updateMonitored(ring, node.getClock().millis());
+        }
+    }
+
+    void checkLeadership() {
+        // ตรวจสอบ leadership table และย้ายตัวที่ตายแล้วไปที่ deathList
+        LeadershipTable.Snapshot leaders = node.getLeadership().snapshot();
+        boolean hasDeadLeader = false; // เพิ่มตัวแปรเช็คว่ามี leader ตาย
 
-                // ตรวจสอบสถานการณ์การเลือกตั้ง
-                checkElectionConditions();
+        for (int i = 0; i < leaders.size(); i++) {
+            LeadershipTable.Entry leader = leaders.get(i);
+            int bossPid = leader.getPid();
+            Role role = leader.getRole();
 
-                if (node.getAliveList().size() == 1) {
-                    System.out.println("Process " + node.getPid() + " saidAlert: Only one process left alive.");
+            // ถ้า pid อยู่ใน deathList หรือไม่มี heartbeat (ตาย)
+            // a gap in heartbeats does not count against a leader that still holds the lease
+            boolean isDead = node.getMembership().isDead(bossPid) ||
+                    (!node.getMembership().hasHeartbeat(bossPid)
+                            && !node.getLeadership().holdsLease(bossPid, node.getClock().millis()));
+
+            if (isDead) {
+                // System.out.println("Process " + node.getPid() + " said Moving dead " + role + " (PID: "
+                //         + bossPid + ") from bossList to deathList");
+
+                // เพิ่มใน deathList ถ้ายังไม่มี
+                node.getMembership().markDead(bossPid);
+
+                // ตรวจสอบว่าเป็น leader role หรือไม่
+                if (role.isLeadership()) {
+                    hasDeadLeader = true;
+                    // เรียก promote เมื่อ leader ตาย
+                    node.promote(bossPid, role.label());
                 }
 
-                Thread.sleep(5000);
+                // ลบออกจาก leadership table
+                node.getLeadership().remove(bossPid);
             }
-        } catch (InterruptedException e) {
-            running = false;
+        }
+
+        // ตรวจสอบสถานการณ์การเลือกตั้ง
+        checkElectionConditions();
+
+        if (node.getMembership().aliveCount() == 1) {
+            node.event(EventType.LAST_ALIVE, node.getPid(), null);
         }
     }
 
@@ -107,30 +282,29 @@ public class FailureDetector extends Thread {
         int aliveDeputy1Count = 0;
         int aliveDeputy2Count = 0;
 
-        for (String bossStr : node.getBossList()) {
-            String[] parts = bossStr.split(":");
-            if (parts.length >= 3) {
-                int bossPid = Integer.parseInt(parts[0]);
-                String role = parts[1];
-                String status = parts[2];
-
-                // ตรวจสอบว่ายังมีชีวิตอยู่จริง
-                boolean isAlive = status.equals("alive") &&
-                        !node.getDeathList().contains(bossPid) &&
-                        listener.getHeartbeatMap().containsKey(bossPid);
-
-                if (isAlive) {
-                    switch (role) {
-                        case "Boss":
-                            aliveBossCount++;
-                            break;
-                        case "Deputy1":
-                            aliveDeputy1Count++;
-                            break;
-                        case "Deputy2":
-                            aliveDeputy2Count++;
-                            break;
-                    }
+        LeadershipTable.Snapshot leaders = node.getLeadership().snapshot();
+        for (int i = 0; i < leaders.size(); i++) {
+            LeadershipTable.Entry leader = leaders.get(i);
+            int bossPid = leader.getPid();
+
+            // ตรวจสอบว่ายังมีชีวิตอยู่จริง
+            boolean isAlive = leader.isAlive() &&
+                    !node.getMembership().isDead(bossPid) &&
+                    node.getMembership().hasHeartbeat(bossPid);
+
+            if (isAlive) {
+                switch (leader.getRole()) {
+                    case BOSS:
+                        aliveBossCount++;
+                        break;
+                    case DEPUTY1:
+                        aliveDeputy1Count++;
+                        break;
+                    case DEPUTY2:
+                        aliveDeputy2Count++;
+                        break;
+                    default:
+                        break;
                 }
             }
         }
@@ -143,44 +317,37 @@ public class FailureDetector extends Thread {
         // node.getBossList());
 
         // เงื่อนไขการเลือกตั้ง
-        if (aliveBossCount == 0 && aliveDeputy1Count == 0 && aliveDeputy2Count == 0) {
+        // no election while some Boss holds a valid lease; startElection() is a no-op while a round is open
+        boolean leased = node.currentLeader() != -1;
+        if (!leased && aliveBossCount == 0 && aliveDeputy1Count == 0 && aliveDeputy2Count == 0) {
             // ไม่มี leader เลย -> เลือกตั้งใหม่ทั้งหมด
-            System.out.println("Process " + node.getPid() + " said No leaders alive → Process " + node.getPid()
-                    + " starting election");
-            node.startElection();
-        } else if (node.getBossList().isEmpty()) {
+            if (node.startElection()) {
+                node.event(EventType.ELECTION_TRIGGERED, node.getPid(), null, 0, 0, 0, 0, 0);
+            }
+        } else if (!leased && leaders.isEmpty()) {
             // bossList ว่างเปล่า -> เลือกตั้งใหม่
-            System.out.println("Process " + node.getPid() + " said BossList is empty → Process " + node.getPid()
-                    + " starting election");
-            node.startElection();
+            if (node.startElection()) {
+                node.event(EventType.ELECTION_TRIGGERED, node.getPid(), null, 1, 0, 0, 0, 0);
+            }
         }
 
         // เงื่อนไขเพิ่มเติม: หาก process นี้เป็น leader แต่ไม่อยู่ใน bossList
-        String myRole = node.getRole();
-        if ((myRole.equals("Boss") || myRole.equals("Deputy1") || myRole.equals("Deputy2")) &&
-                !isInBossList(node.getPid())) {
+        Role myRole = Role.fromLabel(node.getRole());
+        if (myRole.isLeadership() && !node.getLeadership().contains(node.getPid())) {
             // เพิ่มตัวเองเข้า bossList
-            node.getBossList().add(node.getPid() + ":" + myRole + ":alive");
+            node.getLeadership().put(node.getPid(), myRole, LeadershipTable.Liveness.ALIVE);
             // System.out.println("Added self to bossList: " + node.getPid() + ":" +
             // myRole);
         }
     }
 
-    private boolean isInBossList(int pid) {
-        for (String bossStr : node.getBossList()) {
-            String[] parts = bossStr.split(":");
-            if (parts.length >= 1) {
-                int bossPid = Integer.parseInt(parts[0]);
-                if (bossPid == pid) {
-                    return true;
-                }
-            }
-        }
-        return false;
-    }
-
     public void shutdown() {
         running = false;
-        this.interrupt();
+        NodeExecutor.Task t = task;
+        if (t != null) {
+            t.cancel();
+        } else {
+            this.interrupt();
+        }
     }
 }
\ No newline at end of file
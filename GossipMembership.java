@@ -0,0 +1,352 @@
+package com.example;
+
+import java.util.*;
+
+// SWIM-style membership: instead of every node consuming every heartbeat, each node probes one
+// member per protocol period (PING -> ACK on the member's inbox topic, PING_REQ through other
+// members if that fails) and piggybacks recent membership updates on those messages. Per-node
+// cost is one probe per period regardless of cluster size; an update is retransmitted about
+// 3 * log2(n) times, which spreads it to the whole cluster in O(log n) periods.
+// A member that fails a probe is only SUSPECT; it is declared DEAD after suspicionTimeout unless
+// it refutes the suspicion with a higher incarnation.
+public class GossipMembership {
+    public static final String JOIN_TOPIC = "gossip-join-topic";
+
+    private static final class Member {
+        final int pid;
+        MemberState state = MemberState.ALIVE;
+        int incarnation;
+        long suspectedAt;
+
+        Member(int pid) {
+            this.pid = pid;
+        }
+    }
+
+    private static final class Update {
+        final int pid;
+        MemberState state;
+        int incarnation;
+        int transmissions;
+
+        Update(int pid) {
+            this.pid = pid;
+        }
+    }
+
+    private final ProcessNode node;
+    private final long periodMillis;
+    private final long suspicionTimeoutMillis;
+    private final Random random;
+    private final Prober prober;
+    private final Message out = new Message();
+
+    private final IntMap<Member> members = new IntMap<>();
+    // randomized round-robin probe order (SWIM section 4.3), reshuffled after every pass
+    private int[] order = new int[16];
+    private int orderSize = 0;
+    private int orderIndex = 0;
+
+    private final IntMap<Update> updatesByPid = new IntMap<>();
+    private final List<Update> updates = new ArrayList<>();
+    private final List<Member> suspects = new ArrayList<>();
+
+    private int incarnation = 0;
+    private long nextProbeAt = 0;
+
+    public interface DeathHandler {
+        // confirmed is true when this node's own suspicion timed out, false when the death was learned
+        void onDeath(int pid, boolean confirmed);
+    }
+
+    private DeathHandler deathHandler = (pid, confirmed) -> { };
+
+    // probes are answered on the Listener's polling thread, so a round trip is network time only;
+    // the suspicion timeout gives a suspected member about three periods to refute
+    public GossipMembership(ProcessNode node) {
+        this(node, 1000, 500, 3000, node.getRandom());
+    }
+
+    public GossipMembership(ProcessNode node, long periodMillis, long ackTimeoutMillis,
+            long suspicionTimeoutMillis, Random random) {
+        this.node = node;
+        this.periodMillis = periodMillis;
+        this.suspicionTimeoutMillis = suspicionTimeoutMillis;
+        this.random = random;
+        // a relayed probe takes two round trips
+        this.prober = new Prober(node, ackTimeoutMillis, 2 * ackTimeoutMillis, 3, random);
+        prober.setCallback(this::probed);
+        prober.setPiggyback(this::piggybackUpdates);
+    }
+
+    // PING / PING_REQ / ACK handling, shared with the rest of the node
+    public Prober getProber() {
+        return prober;
+    }
+
+    public long getPeriodMillis() {
+        return periodMillis;
+    }
+
+    // called with the PID of every member this node learns is dead, on the thread that learned it
+    public void setDeathHandler(DeathHandler deathHandler) {
+        this.deathHandler = deathHandler;
+    }
+
+    // announce this node once on the shared join topic; members answer by probing it
+    public synchronized void start() {
+        long now = node.getClock().millis();
+        node.getMembership().markAlive(node.getPid());
+        node.getMembership().recordHeartbeat(node.getPid(), now);
+        out.reset(MessageType.JOIN, node.getPid());
+        out.addUpdate(node.getPid(), MemberState.ALIVE, incarnation);
+        node.send(JOIN_TOPIC, out);
+        nextProbeAt = now + periodMillis;
+    }
+
+    // runs the protocol period, returns the time it next needs to be called.
+    // The prober is called outside this lock: its piggyback hook takes the lock the other way round.
+    public long tick(long now) {
+        int target = -1;
+        long next;
+        synchronized (this) {
+            for (int i = suspects.size() - 1; i >= 0; i--) {
+                Member m = suspects.get(i);
+                if (now - m.suspectedAt >= suspicionTimeoutMillis) {
+                    markDead(m, m.incarnation, true);
+                }
+            }
+            if (now >= nextProbeAt) {
+                target = nextTarget();
+                nextProbeAt = now + periodMillis;
+            }
+            next = nextProbeAt;
+            for (Member m : suspects) {
+                next = Math.min(next, m.suspectedAt + suspicionTimeoutMillis);
+            }
+        }
+        if (target >= 0) {
+            prober.probe(target, now);
+        }
+        return next;
+    }
+
+    // applies piggybacked updates from any JOIN / PING / PING_REQ / ACK, the prober answers the probes
+    public void handle(Message msg, long now) {
+        int sender = msg.getPid();
+        synchronized (this) {
+            for (int i = 0; i < msg.getUpdateCount(); i++) {
+                apply(msg.getUpdatePid(i), msg.getUpdateState(i), msg.getUpdateIncarnation(i), now);
+            }
+            Member m = sender != node.getPid() ? members.get(sender) : null;
+            if (sender != node.getPid() && m == null) {
+                // hearing from an unknown sender directly is as good as an ALIVE update
+                apply(sender, MemberState.ALIVE, 0, now);
+            } else if (m != null && m.state != MemberState.ALIVE && msg.getType() == MessageType.JOIN) {
+                // only a process that just started sends a JOIN, at incarnation 0: a restart, which
+                // could otherwise only come back by refuting its DEAD update while that still spreads
+                rejoined(m, now);
+            }
+        }
+        // probe the newcomer right away so it learns about this node
+        if (msg.getType() == MessageType.JOIN && sender != node.getPid()) {
+            prober.probe(sender, now);
+        }
+    }
+
+    // a death confirmed and broadcast by another member, faster than waiting for it on a piggyback
+    public synchronized void dead(int pid) {
+        Member m = members.get(pid);
+        if (m != null && m.state != MemberState.DEAD) {
+            markDead(m, m.incarnation, false);
+        }
+    }
+
+    public synchronized int size() {
+        return orderSize + 1;
+    }
+
+    private int nextTarget() {
+        if (orderSize == 0) {
+            return -1;
+        }
+        if (orderIndex >= orderSize) {
+            shuffle();
+            orderIndex = 0;
+        }
+        return order[orderIndex++];
+    }
+
+    // a failed direct + indirect probe only makes the member SUSPECT
+    private synchronized void probed(int pid, boolean alive) {
+        Member m = members.get(pid);
+        if (!alive && m != null && m.state == MemberState.ALIVE) {
+            suspect(m, m.incarnation, node.getClock().millis());
+        }
+    }
+
+    private void apply(int pid, MemberState state, int inc, long now) {
+        if (pid == node.getPid()) {
+            // someone suspects this node or thinks it is dead: refute with a higher incarnation
+            if (state != MemberState.ALIVE && inc >= incarnation) {
+                incarnation = inc + 1;
+                enqueue(pid, MemberState.ALIVE, incarnation);
+            }
+            return;
+        }
+        Member m = members.get(pid);
+        if (state == MemberState.ALIVE) {
+            if (m == null) {
+                m = new Member(pid);
+                m.incarnation = inc;
+                members.put(pid, m);
+                addToOrder(pid);
+                joined(pid, now);
+                enqueue(pid, MemberState.ALIVE, inc);
+            } else if (inc > m.incarnation) {
+                MemberState previous = m.state;
+                m.incarnation = inc;
+                m.state = MemberState.ALIVE;
+                if (previous == MemberState.DEAD) {
+                    addToOrder(pid);
+                    joined(pid, now);
+                } else if (previous == MemberState.SUSPECT) {
+                    node.getMetrics().recordFalseSuspicion();
+                    suspects.remove(m);
+                    node.getMembership().clearSuspect(pid);
+                }
+                enqueue(pid, MemberState.ALIVE, inc);
+            }
+            return;
+        }
+        if (m == null) {
+            m = new Member(pid);
+            m.incarnation = inc;
+            members.put(pid, m);
+            addToOrder(pid);
+        }
+        if (state == MemberState.SUSPECT) {
+            if ((m.state == MemberState.ALIVE && inc >= m.incarnation)
+                    || (m.state == MemberState.SUSPECT && inc > m.incarnation)) {
+                suspect(m, inc, now);
+            }
+        } else if (state == MemberState.DEAD) {
+            if (m.state != MemberState.DEAD && inc >= m.incarnation) {
+                markDead(m, inc, false);
+            }
+        }
+    }
+
+    private void suspect(Member m, int inc, long now) {
+        if (m.state != MemberState.SUSPECT) {
+            suspects.add(m);
+            node.getMetrics().recordSuspicion();
+            node.event(EventType.SUSPECT, m.pid, null);
+            node.suspected(m.pid);
+        }
+        m.state = MemberState.SUSPECT;
+        m.incarnation = inc;
+        m.suspectedAt = now;
+        node.getMembership().markSuspect(m.pid);
+        enqueue(m.pid, MemberState.SUSPECT, inc);
+    }
+
+    private void rejoined(Member m, long now) {
+        if (m.state == MemberState.DEAD) {
+            addToOrder(m.pid);
+            joined(m.pid, now);
+        } else {
+            suspects.remove(m);
+            node.getMembership().clearSuspect(m.pid);
+        }
+        m.state = MemberState.ALIVE;
+        // replaces a DEAD or SUSPECT update of this node's still being piggybacked
+        enqueue(m.pid, MemberState.ALIVE, m.incarnation);
+    }
+
+    private void joined(int pid, long now) {
+        node.getMembership().markAlive(pid);
+        node.getMembership().removeDead(pid);
+        node.getMembership().recordHeartbeat(pid, now);
+    }
+
+    private void markDead(Member m, int inc, boolean confirmed) {
+        if (m.state == MemberState.SUSPECT) {
+            suspects.remove(m);
+        }
+        node.getMembership().clearSuspect(m.pid);
+        m.state = MemberState.DEAD;
+        m.incarnation = inc;
+        removeFromOrder(m.pid);
+        enqueue(m.pid, MemberState.DEAD, inc);
+        deathHandler.onDeath(m.pid, confirmed);
+    }
+
+    private void enqueue(int pid, MemberState state, int inc) {
+        Update u = updatesByPid.get(pid);
+        if (u == null) {
+            u = new Update(pid);
+            updatesByPid.put(pid, u);
+            updates.add(u);
+        }
+        u.state = state;
+        u.incarnation = inc;
+        u.transmissions = 0;
+    }
+
+    private synchronized void piggybackUpdates(Message msg) {
+        piggyback(msg);
+    }
+
+    // adds the least-transmitted updates to msg and retires those sent often enough
+    private void piggyback(Message msg) {
+        if (updates.isEmpty()) {
+            return;
+        }
+        int limit = 3 * (32 - Integer.numberOfLeadingZeros(size()));
+        updates.sort((a, b) -> Integer.compare(a.transmissions, b.transmissions));
+        for (int i = 0; i < updates.size() && msg.getUpdateCount() < Message.MAX_UPDATES; i++) {
+            Update u = updates.get(i);
+            msg.addUpdate(u.pid, u.state, u.incarnation);
+            u.transmissions++;
+        }
+        for (Iterator<Update> it = updates.iterator(); it.hasNext();) {
+            Update u = it.next();
+            if (u.transmissions >= limit) {
+                it.remove();
+                updatesByPid.remove(u.pid);
+            }
+        }
+    }
+
+    private void addToOrder(int pid) {
+        if (orderSize == order.length) {
+            order = Arrays.copyOf(order, orderSize * 2);
+        }
+        // insert at a random position so new members are probed within one pass
+        int pos = random.nextInt(orderSize + 1);
+        order[orderSize++] = order[pos];
+        order[pos] = pid;
+    }
+
+    private void removeFromOrder(int pid) {
+        for (int i = 0; i < orderSize; i++) {
+            if (order[i] == pid) {
+                order[i] = order[--orderSize];
+                if (orderIndex > orderSize) {
+                    orderIndex = orderSize;
+                }
+                return;
+            }
+        }
+    }
+
+    private void shuffle() {
+        for (int i = orderSize - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            int t = order[i];
+            order[i] = order[j];
+            order[j] = t;
+        }
+    }
+}
\ No newline at end of file
@@ -1,17 +1,53 @@
 package com.example;
 
-import org.apache.kafka.clients.producer.ProducerRecord;
-import org.apache.kafka.clients.producer.Callback;
-import org.apache.kafka.clients.producer.RecordMetadata;
-
-public class HeartbeatSender extends Thread {
+public class HeartbeatSender extends Thread implements NodeExecutor.Step {
     private final ProcessNode node;
     private volatile boolean running = true;
+    // set when running on a shared NodeExecutor instead of this thread
+    private volatile NodeExecutor.Task task;
     private long heartbeatCount = 0;
+    private long suppressedCount = 0;
+    // when the next heartbeat is due, 0 before the first one
+    private long nextBeat = 0;
+    // when this sender last sent, to tell its own heartbeats from other traffic
+    private long lastBeatAt = 0;
+
+    // interval adapts between min and max: back to min on any membership change,
+    // grows 10% per heartbeat sent once the cluster has been stable for stableAfter ms
+    private final long minInterval;
+    private final long maxInterval;
+    private final long stableAfter;
+    private volatile long currentInterval;
+    private final Message msg;
+    private final Transport.Callback callback;
 
     public HeartbeatSender(ProcessNode node) {
+        this(node, 1000, 2000, 10000);
+    }
+
+    public HeartbeatSender(ProcessNode node, long minInterval, long maxInterval, long stableAfter) {
         this.node = node;
+        this.minInterval = minInterval;
+        this.maxInterval = maxInterval;
+        this.stableAfter = stableAfter;
+        this.currentInterval = minInterval;
         this.setName("HeartbeatSender-" + node.getPid()); // ตั้งชื่อ thread
+
+        // reused for every heartbeat, the transport copies it before send returns
+        this.msg = new Message(MessageType.HEARTBEAT, node.getPid());
+        this.callback = new Transport.Callback() {
+            @Override
+            public void onCompletion(Exception exception) {
+                if (exception != null) {
+                    // rate limited, a broker outage fails every heartbeat
+                    node.event(EventType.SEND_FAILURE, node.getPid(), null);
+                } else {
+                    // Uncomment for detailed debugging
+                    // System.out.println("Process " + node.getPid() +
+                    // " sent heartbeat #" + heartbeatCount);
+                }
+            }
+        };
     }
 
     @Override
@@ -20,34 +56,9 @@ public class HeartbeatSender extends Thread {
 
         try {
             while (running) {
-                String msg = "HEARTBEAT:" + node.getPid();
-
-                // ส่ง heartbeat พร้อม callback เพื่อจัดการ error
-                node.getProducer().send(
-                        new ProducerRecord<>("heartbeat-topic", msg),
-                        new Callback() {
-                            @Override
-                            public void onCompletion(RecordMetadata metadata, Exception exception) {
-                                if (exception != null) {
-                                    System.err.println("Process " + node.getPid() +
-                                            " failed to send heartbeat: " + exception.getMessage());
-                                } else {
-                                    // Uncomment for detailed debugging
-                                    // System.out.println("Process " + node.getPid() +
-                                    // " sent heartbeat #" + heartbeatCount);
-                                }
-                            }
-                        });
-
-                heartbeatCount++;
-
-                // Debug output ทุก 30 วินาที (30 heartbeats)
-                // if (heartbeatCount % 30 == 0) {
-                // System.out.println("Process " + node.getPid() + " (" + node.getRole() +
-                // ") heartbeat count: " + heartbeatCount);
-                // }
-
-                Thread.sleep(1000);
+                long next = step(node.getClock().millis());
+                // measured after the step, so the time spent sending is not added to the interval
+                Thread.sleep(Math.max(0, next - node.getClock().millis()));
             }
         } catch (InterruptedException e) {
             System.out.println("HeartbeatSender for Process " + node.getPid() + " interrupted");
@@ -56,14 +67,100 @@ public class HeartbeatSender extends Thread {
             System.err.println("HeartbeatSender for Process " + node.getPid() +
                     " encountered error: " + e.getMessage());
         } finally {
-            System.out.println("HeartbeatSender for Process " + node.getPid() + " stopped");
+            stopped();
+        }
+    }
+
+    // runs on a shared executor instead of this thread, shutdown() works the same way
+    public void start(NodeExecutor executor) {
+        System.out.println("HeartbeatSender started for Process " + node.getPid());
+        task = executor.submit(getName(), this);
+    }
+
+    // one round of the send loop, returns when the next round is due
+    @Override
+    public long step(long now) {
+        if (now < nextBeat) {
+            // woken early
+            return nextBeat;
+        }
+        long interval = adaptInterval(now);
+        long lastSend = node.getLastSendTime();
+        long idle = now - lastSend;
+        MonitorRing ring = node.getMonitorRing();
+
+        // only another broadcast since this node's last heartbeat stands in for the next one: after a late
+        // wake-up the fixed-rate schedule is due less than an interval after that heartbeat itself.
+        // With a monitoring ring, other traffic may be point-to-point and miss this node's monitors
+        if (lastSend > lastBeatAt && idle < interval && ring == null) {
+            // มีข้อความอื่นส่งออกไปแล้วในช่วงนี้ ไม่ต้องส่ง heartbeat ซ้ำ
+            suppressedCount++;
+            nextBeat = now + interval - idle;
+            return nextBeat;
+        }
+
+        interval = grow(now);
+        // fixed rate: due one interval after this beat was due, not after this step happened to run, so
+        // a late wake-up does not push every later beat back; after a stall of a whole interval the
+        // schedule restarts from now instead of sending a burst of catch-up beats
+        nextBeat = nextBeat > 0 && now - nextBeat < interval ? nextBeat + interval : now + interval;
+        // numbered only when actually sent, so a gap at the receiver is a lost beat, not a suppressed one
+        msg.setBeat(heartbeatCount + 1).setSentAt(now);
+
+        // ส่ง heartbeat พร้อม callback เพื่อจัดการ error
+        if (ring != null) {
+            // only the k nodes monitoring this one need it
+            ring.refresh();
+            for (int monitor : ring.getPredecessors()) {
+                node.send(ProcessNode.inboxTopic(monitor), msg, callback);
+            }
+        } else {
+            node.send("heartbeat-topic", msg, callback);
         }
+
+        heartbeatCount++;
+        lastBeatAt = node.getLastSendTime();
+        node.getMetrics().recordHeartbeatSent();
+
+        // Debug output ทุก 30 วินาที (30 heartbeats)
+        // if (heartbeatCount % 30 == 0) {
+        // System.out.println("Process " + node.getPid() + " (" + node.getRole() +
+        // ") heartbeat count: " + heartbeatCount);
+        // }
+
+        return nextBeat;
+    }
+
+    @Override
+    public void stopped() {
+        System.out.println("HeartbeatSender for Process " + node.getPid() + " stopped");
     }
 
     public void shutdown() {
         System.out.println("Shutting down HeartbeatSender for Process " + node.getPid());
         running = false;
-        this.interrupt();
+        NodeExecutor.Task t = task;
+        if (t != null) {
+            t.cancel();
+        } else {
+            this.interrupt();
+        }
+    }
+
+    // checked every step, so a membership change shortens the interval right away
+    private long adaptInterval(long now) {
+        if (now - node.getLastInstability() < stableAfter) {
+            currentInterval = minInterval;
+        }
+        return currentInterval;
+    }
+
+    // once per heartbeat actually sent, suppressed steps do not count
+    private long grow(long now) {
+        if (now - node.getLastInstability() >= stableAfter) {
+            currentInterval = Math.min(maxInterval, currentInterval + currentInterval / 10);
+        }
+        return currentInterval;
     }
 
     // เพิ่ม method สำหรับ monitoring
@@ -71,7 +168,16 @@ public class HeartbeatSender extends Thread {
         return heartbeatCount;
     }
 
+    // heartbeats skipped because another message already went out within the interval
+    public long getSuppressedCount() {
+        return suppressedCount;
+    }
+
+    public long getCurrentInterval() {
+        return currentInterval;
+    }
+
     public boolean isRunning() {
-        return running && this.isAlive();
+        return running && (task != null || this.isAlive());
     }
 }
\ No newline at end of file
@@ -0,0 +1,142 @@
+package com.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Fixed-bucket latency histogram in microseconds, safe to record from any thread without locks or
+// allocation. Buckets are log-linear: exact below 4 us, then 4 buckets per power of two (<= 25% error)
+// up to about 2^27 us (134 s); larger values land in the last bucket.
+public final class Histogram {
+    private static final int BUCKETS = 108;
+
+    private final AtomicLongArray buckets = new AtomicLongArray(BUCKETS);
+    private final AtomicLong count = new AtomicLong();
+    private final AtomicLong sum = new AtomicLong();
+    private final AtomicLong max = new AtomicLong();
+
+    public void record(long micros) {
+        if (micros < 0) {
+            micros = 0;
+        }
+        buckets.incrementAndGet(bucket(micros));
+        count.incrementAndGet();
+        sum.addAndGet(micros);
+        long m = max.get();
+        while (micros > m && !max.compareAndSet(m, micros)) {
+            m = max.get();
+        }
+    }
+
+    public void recordNanos(long nanos) {
+        record(nanos / 1000);
+    }
+
+    public void recordMillis(long millis) {
+        record(millis * 1000);
+    }
+
+    public long getCount() {
+        return count.get();
+    }
+
+    public double getMeanMillis() {
+        long n = count.get();
+        return n == 0 ? 0 : sum.get() / (n * 1000.0);
+    }
+
+    public double getMaxMillis() {
+        return max.get() / 1000.0;
+    }
+
+    // upper bound of the bucket holding the q-th quantile (0 < q <= 1), never above the recorded max
+    public double percentileMillis(double q) {
+        long n = 0;
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = buckets.get(i);
+            n += counts[i];
+        }
+        if (n == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(q * n);
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts[i];
+            if (seen >= rank) {
+                long upper = i + 1 < BUCKETS ? lowerBound(i + 1) - 1 : Long.MAX_VALUE;
+                return Math.min(upper, max.get()) / 1000.0;
+            }
+        }
+        return getMaxMillis();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(getCount(), getMeanMillis(), percentileMillis(0.5), percentileMillis(0.99), getMaxMillis());
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    static int bucket(long micros) {
+        if (micros < 4) {
+            return (int) micros;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(micros);
+        int index = (exp - 1) * 4 + (int) ((micros >>> (exp - 2)) & 3);
+        return Math.min(index, BUCKETS - 1);
+    }
+
+    static long lowerBound(int bucket) {
+        if (bucket < 4) {
+            return bucket;
+        }
+        int exp = bucket / 4 + 1;
+        return (long) (4 + bucket % 4) << (exp - 2);
+    }
+
+    // immutable copy, also the JMX representation (an MXBean maps it to CompositeData)
+    public static final class Snapshot {
+        private final long count;
+        private final double meanMillis;
+        private final double p50Millis;
+        private final double p99Millis;
+        private final double maxMillis;
+
+        public Snapshot(long count, double meanMillis, double p50Millis, double p99Millis, double maxMillis) {
+            this.count = count;
+            this.meanMillis = meanMillis;
+            this.p50Millis = p50Millis;
+            this.p99Millis = p99Millis;
+            this.maxMillis = maxMillis;
+        }
+
+        public long getCount() {
+            return count;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public double getP50Millis() {
+            return p50Millis;
+        }
+
+        public double getP99Millis() {
+            return p99Millis;
+        }
+
+        public double getMaxMillis() {
+            return maxMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("n=%d mean=%.3fms p50=%.3fms p99=%.3fms max=%.3fms",
+                    count, meanMillis, p50Millis, p99Millis, maxMillis);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,91 @@
+package com.example;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+// In-process message bus for nodes that live in the same JVM.
+// Messages are copied field by field into preallocated slots of each subscriber's ring buffer,
+// no serialization and no broker.
+public class InMemoryBus {
+    // sits between publish and each subscriber's inbox, so a Simulation can delay or drop deliveries
+    public interface Network {
+        // returns false only if the subscriber's inbox was full (a message lost on the wire is not an error)
+        boolean deliver(InMemoryTransport to, String topic, Message message);
+    }
+
+    private final int inboxCapacity;
+    private final Map<String, CopyOnWriteArrayList<InMemoryTransport>> subscribers = new ConcurrentHashMap<>();
+    // compacted topics: latest copy per key, in the order the keys were last written
+    private final Map<String, LinkedHashMap<Integer, Message>> retained = new ConcurrentHashMap<>();
+    // null: every delivery is immediate
+    private volatile Network network;
+
+    public InMemoryBus() {
+        this(4096);
+    }
+
+    public InMemoryBus(int inboxCapacity) {
+        this.inboxCapacity = inboxCapacity;
+    }
+
+    public InMemoryTransport connect() {
+        return new InMemoryTransport(this, inboxCapacity);
+    }
+
+    public void setNetwork(Network network) {
+        this.network = network;
+    }
+
+    void subscribe(String topic, InMemoryTransport transport) {
+        List<InMemoryTransport> list = subscribers.computeIfAbsent(topic, t -> new CopyOnWriteArrayList<>());
+        if (!list.contains(transport)) {
+            list.add(transport);
+        }
+    }
+
+    void unsubscribe(InMemoryTransport transport) {
+        for (List<InMemoryTransport> list : subscribers.values()) {
+            list.remove(transport);
+        }
+    }
+
+    void retain(String topic, int key, Message message) {
+        Message copy = new Message();
+        copy.copyFrom(message);
+        LinkedHashMap<Integer, Message> latest = retained.computeIfAbsent(topic, t -> new LinkedHashMap<>());
+        synchronized (latest) {
+            latest.remove(key);
+            latest.put(key, copy);
+        }
+    }
+
+    void readRetained(String topic, Transport.Handler handler) {
+        LinkedHashMap<Integer, Message> latest = retained.get(topic);
+        if (latest == null) {
+            return;
+        }
+        List<Message> copies;
+        synchronized (latest) {
+            copies = new ArrayList<>(latest.values());
+        }
+        for (Message m : copies) {
+            handler.onMessage(topic, m);
+        }
+    }
+
+    // returns false if at least one subscriber had a full inbox and dropped the message
+    boolean publish(String topic, Message message) {
+        List<InMemoryTransport> list = subscribers.get(topic);
+        if (list == null) {
+            return true;
+        }
+        boolean delivered = true;
+        Network n = network;
+        for (InMemoryTransport t : list) {
+            if (!(n != null ? n.deliver(t, topic, message) : t.deliver(topic, message))) {
+                delivered = false;
+            }
+        }
+        return delivered;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,104 @@
+package com.example;
+
+import java.time.Duration;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+public class InMemoryTransport implements Transport {
+    private final InMemoryBus bus;
+    private final MessageRing inbox;
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile Thread waiter;
+    private volatile Runnable readListener;
+
+    InMemoryTransport(InMemoryBus bus, int inboxCapacity) {
+        this.bus = bus;
+        this.inbox = new MessageRing(inboxCapacity);
+    }
+
+    // delivery is synchronous, both lanes go straight to the subscribers' inboxes
+    @Override
+    public void send(Lane lane, String topic, Message message, Callback callback) {
+        long startedAt = callback != null ? System.nanoTime() : 0;
+        boolean delivered = bus.publish(topic, message);
+        if (callback != null) {
+            callback.onCompletion(delivered ? null : new IllegalStateException("subscriber inbox full"), startedAt);
+        }
+    }
+
+    // retained on the bus, live subscribers of the topic get it as well
+    @Override
+    public void publish(String topic, int key, Message message, Callback callback) {
+        bus.retain(topic, key, message);
+        send(Lane.CONTROL, topic, message, callback);
+    }
+
+    @Override
+    public boolean readCompacted(String topic, Duration timeout, Handler handler) {
+        bus.readRetained(topic, handler);
+        return true;
+    }
+
+    @Override
+    public void subscribe(Collection<String> topics) {
+        for (String topic : topics) {
+            bus.subscribe(topic, this);
+        }
+    }
+
+    @Override
+    public void poll(Duration timeout, Handler handler) throws InterruptedException {
+        if (inbox.drain(handler) > 0) {
+            return;
+        }
+        waiter = Thread.currentThread();
+        try {
+            if (inbox.isEmpty()) {
+                LockSupport.parkNanos(this, timeout.toNanos());
+            }
+        } finally {
+            waiter = null;
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+        inbox.drain(handler);
+    }
+
+    @Override
+    public boolean setReadListener(Runnable listener) {
+        this.readListener = listener;
+        return true;
+    }
+
+    @Override
+    public void unsubscribe() {
+        bus.unsubscribe(this);
+    }
+
+    @Override
+    public void close() {
+        // nothing to release on the sending side
+    }
+
+    boolean deliver(String topic, Message message) {
+        if (!inbox.offer(topic, message)) {
+            dropped.incrementAndGet();
+            return false;
+        }
+        Thread w = waiter;
+        if (w != null) {
+            LockSupport.unpark(w);
+        }
+        Runnable r = readListener;
+        if (r != null) {
+            r.run();
+        }
+        return true;
+    }
+
+    public long getDroppedCount() {
+        return dropped.get();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,193 @@
+package com.example;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+// Open-addressing map from int keys to objects, without boxing the keys.
+// get() is lock-free; put() and remove() are serialized on the map. Removed entries leave a tombstone
+// that keeps probe chains intact for concurrent readers until the next resize.
+public class IntMap<V> {
+    private static final Object TOMBSTONE = new Object();
+
+    private static final class Table {
+        final int[] keys;
+        final AtomicReferenceArray<Object> values;
+        final int mask;
+
+        Table(int capacity) {
+            keys = new int[capacity];
+            values = new AtomicReferenceArray<>(capacity);
+            mask = capacity - 1;
+        }
+    }
+
+    private volatile Table table;
+    private volatile int size = 0;
+    private int used = 0; // live entries + tombstones, guarded by this
+
+    public IntMap() {
+        this(16);
+    }
+
+    public IntMap(int expectedSize) {
+        table = new Table(capacityFor(expectedSize));
+    }
+
+    private static int capacityFor(int n) {
+        return Integer.highestOneBit(Math.max(8, n * 2 - 1)) << 1;
+    }
+
+    private static int index(int key, int mask) {
+        int h = key * 0x9E3779B9;
+        return (h ^ (h >>> 16)) & mask;
+    }
+
+    @SuppressWarnings("unchecked")
+    public V get(int key) {
+        Table t = table;
+        int i = index(key, t.mask);
+        while (true) {
+            // value is read before key so a non-null value guarantees the key write is visible
+            Object v = t.values.get(i);
+            if (v == null) {
+                return null;
+            }
+            if (t.keys[i] == key) {
+                return v == TOMBSTONE ? null : (V) v;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    public boolean containsKey(int key) {
+        return get(key) != null;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized V put(int key, V value) {
+        Objects.requireNonNull(value);
+        Table t = table;
+        int i = index(key, t.mask);
+        while (true) {
+            Object v = t.values.get(i);
+            if (v == null) {
+                break;
+            }
+            if (t.keys[i] == key) {
+                t.values.set(i, value);
+                if (v == TOMBSTONE) {
+                    size++;
+                    return null;
+                }
+                return (V) v;
+            }
+            i = (i + 1) & t.mask;
+        }
+        if (used + 1 > t.keys.length / 2) {
+            resize();
+            return put(key, value);
+        }
+        t.keys[i] = key;
+        t.values.set(i, value);
+        used++;
+        size++;
+        return null;
+    }
+
+    public synchronized V computeIfAbsent(int key, java.util.function.IntFunction<V> factory) {
+        V v = get(key);
+        if (v == null) {
+            v = factory.apply(key);
+            put(key, v);
+        }
+        return v;
+    }
+
+    @SuppressWarnings("unchecked")
+    public synchronized V remove(int key) {
+        Table t = table;
+        int i = index(key, t.mask);
+        while (true) {
+            Object v = t.values.get(i);
+            if (v == null) {
+                return null;
+            }
+            if (t.keys[i] == key) {
+                if (v == TOMBSTONE) {
+                    return null;
+                }
+                t.values.set(i, TOMBSTONE);
+                size--;
+                return (V) v;
+            }
+            i = (i + 1) & t.mask;
+        }
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    public synchronized void clear() {
+        table = new Table(capacityFor(16));
+        used = 0;
+        size = 0;
+    }
+
+    // weakly consistent iteration over the live values
+    public Iterator<V> values() {
+        final Table t = table;
+        return new Iterator<V>() {
+            private int i = -1;
+            private Object next = advance();
+
+            private Object advance() {
+                while (++i < t.keys.length) {
+                    Object v = t.values.get(i);
+                    if (v != null && v != TOMBSTONE) {
+                        return v;
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            public boolean hasNext() {
+                return next != null;
+            }
+
+            @Override
+            @SuppressWarnings("unchecked")
+            public V next() {
+                if (next == null) {
+                    throw new NoSuchElementException();
+                }
+                V v = (V) next;
+                next = advance();
+                return v;
+            }
+        };
+    }
+
+    private void resize() {
+        Table old = table;
+        Table t = new Table(capacityFor(Math.max(size * 2, 8)));
+        for (int j = 0; j < old.keys.length; j++) {
+            Object v = old.values.get(j);
+            if (v != null && v != TOMBSTONE) {
+                int i = index(old.keys[j], t.mask);
+                while (t.values.get(i) != null) {
+                    i = (i + 1) & t.mask;
+                }
+                t.keys[i] = old.keys[j];
+                t.values.set(i, v);
+            }
+        }
+        used = size;
+        table = t;
+    }
+}
\ No newline at end of file
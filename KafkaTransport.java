@@ -0,0 +1,188 @@
+package com.example;
+
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.*;
+import org.apache.kafka.clients.consumer.ConsumerConfig;
+import org.apache.kafka.clients.consumer.ConsumerRecord;
+import org.apache.kafka.clients.consumer.ConsumerRecords;
+import org.apache.kafka.clients.consumer.KafkaConsumer;
+import org.apache.kafka.clients.producer.KafkaProducer;
+import org.apache.kafka.clients.producer.ProducerConfig;
+import org.apache.kafka.clients.producer.ProducerRecord;
+import org.apache.kafka.common.PartitionInfo;
+import org.apache.kafka.common.TopicPartition;
+import org.apache.kafka.common.errors.TimeoutException;
+import org.apache.kafka.common.serialization.ByteArrayDeserializer;
+import org.apache.kafka.common.serialization.ByteBufferSerializer;
+
+public class KafkaTransport implements Transport {
+    private final Properties kafkaProps;
+    private final String groupId;
+    // one producer per lane, so heartbeats never wait in the control producer's batches
+    private final KafkaProducer<String, ByteBuffer> heartbeatProducer;
+    private final KafkaProducer<String, ByteBuffer> controlProducer;
+    private KafkaConsumer<String, byte[]> consumer;
+
+    // encode buffer per sending thread, the producer copies the bytes before send() returns
+    private final ThreadLocal<ByteBuffer> encodeBuffer = ThreadLocal
+            .withInitial(() -> ByteBuffer.allocate(MessageCodec.MAX_SIZE));
+    // only touched by the polling thread
+    private final Message decoded = new Message();
+
+    public KafkaTransport(Properties kafkaProps, String groupId) {
+        this.kafkaProps = kafkaProps;
+        this.groupId = groupId;
+
+        // fire-and-forget: no acks, no retries, no batching delay, and give up quickly
+        Properties heartbeat = producerProps();
+        heartbeat.put(ProducerConfig.ACKS_CONFIG, "0");
+        heartbeat.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "false");
+        heartbeat.put(ProducerConfig.RETRIES_CONFIG, "0");
+        heartbeat.put(ProducerConfig.LINGER_MS_CONFIG, "0");
+        heartbeat.put(ProducerConfig.MAX_BLOCK_MS_CONFIG, "200");
+        heartbeat.put(ProducerConfig.REQUEST_TIMEOUT_MS_CONFIG, "500");
+        heartbeat.put(ProducerConfig.DELIVERY_TIMEOUT_MS_CONFIG, "1000");
+        this.heartbeatProducer = new KafkaProducer<>(heartbeat);
+
+        // reliable and ordered: acknowledged by all replicas, idempotent retries, one request in flight
+        Properties control = producerProps();
+        control.put(ProducerConfig.ACKS_CONFIG, "all");
+        control.put(ProducerConfig.ENABLE_IDEMPOTENCE_CONFIG, "true");
+        control.put(ProducerConfig.MAX_IN_FLIGHT_REQUESTS_PER_CONNECTION, "1");
+        this.controlProducer = new KafkaProducer<>(control);
+    }
+
+    private Properties producerProps() {
+        Properties props = new Properties();
+        props.putAll(kafkaProps);
+        props.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, ByteBufferSerializer.class.getName());
+        return props;
+    }
+
+    private ByteBuffer encode(Message message) {
+        ByteBuffer buf = encodeBuffer.get();
+        buf.clear();
+        MessageCodec.encode(message, buf);
+        buf.flip();
+        return buf;
+    }
+
+    @Override
+    public void send(Lane lane, String topic, Message message, Callback callback) {
+        KafkaProducer<String, ByteBuffer> producer = lane == Lane.HEARTBEAT ? heartbeatProducer : controlProducer;
+        ProducerRecord<String, ByteBuffer> record = new ProducerRecord<>(topic, encode(message));
+        if (callback == null) {
+            producer.send(record);
+        } else {
+            long startedAt = System.nanoTime();
+            producer.send(record, (metadata, exception) -> callback.onCompletion(exception, startedAt));
+        }
+    }
+
+    // the key is what log compaction keeps the latest record of
+    @Override
+    public void publish(String topic, int key, Message message, Callback callback) {
+        ProducerRecord<String, ByteBuffer> record = new ProducerRecord<>(topic, Integer.toString(key), encode(message));
+        long startedAt = System.nanoTime();
+        controlProducer.send(record, (metadata, exception) -> {
+            if (callback != null) {
+                callback.onCompletion(exception, startedAt);
+            }
+        });
+    }
+
+    // a short-lived consumer outside the group reads every partition from the beginning up to the end offsets
+    // taken at the start, so the read is bounded even while nodes keep publishing. Every blocking call gets
+    // what is left of timeout, so missing metadata cannot stall it for default.api.timeout.ms
+    @Override
+    public boolean readCompacted(String topic, Duration timeout, Handler handler) {
+        Properties props = new Properties();
+        props.putAll(kafkaProps);
+        props.remove(ConsumerConfig.GROUP_ID_CONFIG);
+        props.put(ConsumerConfig.ENABLE_AUTO_COMMIT_CONFIG, "false");
+        props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+        long deadline = System.currentTimeMillis() + timeout.toMillis();
+        Message message = new Message();
+        try (KafkaConsumer<String, byte[]> reader = new KafkaConsumer<>(props)) {
+            List<PartitionInfo> infos = reader.partitionsFor(topic, remaining(deadline));
+            if (infos == null || infos.isEmpty()) {
+                return true;
+            }
+            List<TopicPartition> partitions = new ArrayList<>();
+            for (PartitionInfo info : infos) {
+                partitions.add(new TopicPartition(topic, info.partition()));
+            }
+            reader.assign(partitions);
+            reader.seekToBeginning(partitions);
+            Map<TopicPartition, Long> end = reader.endOffsets(partitions, remaining(deadline));
+            while (!caughtUp(reader, end, deadline)) {
+                Duration left = remaining(deadline);
+                if (left.isZero()) {
+                    return false;
+                }
+                for (ConsumerRecord<String, byte[]> record : reader.poll(left)) {
+                    if (MessageCodec.decode(record.value(), message)) {
+                        handler.onMessage(topic, message);
+                    }
+                }
+            }
+        } catch (TimeoutException e) {
+            return false;
+        }
+        return true;
+    }
+
+    private static Duration remaining(long deadline) {
+        return Duration.ofMillis(Math.max(0, deadline - System.currentTimeMillis()));
+    }
+
+    private static boolean caughtUp(KafkaConsumer<String, byte[]> reader, Map<TopicPartition, Long> end,
+            long deadline) {
+        for (Map.Entry<TopicPartition, Long> e : end.entrySet()) {
+            if (reader.position(e.getKey(), remaining(deadline)) < e.getValue()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public synchronized void subscribe(Collection<String> topics) {
+        if (consumer == null) {
+            Properties props = new Properties();
+            props.putAll(kafkaProps);
+            props.put(ConsumerConfig.GROUP_ID_CONFIG, groupId);
+            props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+            props.put(ConsumerConfig.VALUE_DESERIALIZER_CLASS_CONFIG, ByteArrayDeserializer.class.getName());
+            consumer = new KafkaConsumer<>(props);
+        }
+        consumer.subscribe(topics);
+    }
+
+    @Override
+    public void poll(Duration timeout, Handler handler) {
+        ConsumerRecords<String, byte[]> records = consumer.poll(timeout);
+        for (ConsumerRecord<String, byte[]> record : records) {
+            if (MessageCodec.decode(record.value(), decoded)) {
+                handler.onMessage(record.topic(), decoded);
+            } else {
+                System.err.println("Dropping malformed message on " + record.topic());
+            }
+        }
+    }
+
+    @Override
+    public synchronized void unsubscribe() {
+        if (consumer != null) {
+            consumer.close();
+            consumer = null;
+        }
+    }
+
+    @Override
+    public void close() {
+        heartbeatProducer.close();
+        controlProducer.close();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,128 @@
+package com.example;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per send lane (see Transport.Lane): messages handed to the transport and not yet completed, which is
+// the lane's queue depth, plus hand-off to completion latency and failures.
+public class LaneStats {
+    private final AtomicLong inFlight = new AtomicLong();
+    private final AtomicLong maxInFlight = new AtomicLong();
+    private final AtomicLong sent = new AtomicLong();
+    private final AtomicLong failed = new AtomicLong();
+    private final Histogram latency = new Histogram();
+    // the transport hands the start time back with the completion, so one callback serves every send
+    // with the same next callback and tracking a heartbeat allocates nothing
+    private final Tracked plain = new Tracked(null);
+    private final ConcurrentHashMap<Transport.Callback, Tracked> wrappers = new ConcurrentHashMap<>();
+    private static final int MAX_WRAPPERS = 16;
+
+    // counts one send and returns the callback that completes it, wrapping the caller's (may be null)
+    public Transport.Callback track(Transport.Callback callback) {
+        sent.incrementAndGet();
+        long depth = inFlight.incrementAndGet();
+        long max = maxInFlight.get();
+        while (depth > max && !maxInFlight.compareAndSet(max, depth)) {
+            max = maxInFlight.get();
+        }
+        if (callback == null) {
+            return plain;
+        }
+        Tracked tracked = wrappers.get(callback);
+        if (tracked == null) {
+            tracked = new Tracked(callback);
+            // callers keep one callback each; a caller passing a new one per send is not cached
+            if (wrappers.size() < MAX_WRAPPERS) {
+                wrappers.putIfAbsent(callback, tracked);
+            }
+        }
+        return tracked;
+    }
+
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    public Snapshot snapshot() {
+        return new Snapshot(inFlight.get(), maxInFlight.get(), sent.get(), failed.get(), latency.snapshot());
+    }
+
+    @Override
+    public String toString() {
+        return snapshot().toString();
+    }
+
+    private final class Tracked implements Transport.Callback {
+        private final Transport.Callback next;
+
+        Tracked(Transport.Callback next) {
+            this.next = next;
+        }
+
+        @Override
+        public void onCompletion(Exception exception, long startedAt) {
+            if (exception == null) {
+                latency.recordNanos(System.nanoTime() - startedAt);
+            }
+            completed(exception);
+        }
+
+        // without a start time, e.g. send threw before the transport took the message
+        @Override
+        public void onCompletion(Exception exception) {
+            completed(exception);
+        }
+
+        private void completed(Exception exception) {
+            inFlight.decrementAndGet();
+            if (exception != null) {
+                failed.incrementAndGet();
+            }
+            if (next != null) {
+                next.onCompletion(exception);
+            }
+        }
+    }
+
+    public static final class Snapshot {
+        private final long inFlight;
+        private final long maxInFlight;
+        private final long sent;
+        private final long failed;
+        private final Histogram.Snapshot latency;
+
+        public Snapshot(long inFlight, long maxInFlight, long sent, long failed, Histogram.Snapshot latency) {
+            this.inFlight = inFlight;
+            this.maxInFlight = maxInFlight;
+            this.sent = sent;
+            this.failed = failed;
+            this.latency = latency;
+        }
+
+        public long getInFlight() {
+            return inFlight;
+        }
+
+        public long getMaxInFlight() {
+            return maxInFlight;
+        }
+
+        public long getSent() {
+            return sent;
+        }
+
+        public long getFailed() {
+            return failed;
+        }
+
+        public Histogram.Snapshot getLatency() {
+            return latency;
+        }
+
+        @Override
+        public String toString() {
+            return "sent=" + sent + " failed=" + failed + " depth=" + inFlight + " (max " + maxInFlight + ") "
+                    + latency;
+        }
+    }
+}
\ No newline at end of file
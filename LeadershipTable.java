@@ -0,0 +1,343 @@
+package com.example;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+
+// Who holds Boss / Deputy1 / Deputy2 (and retired Ex-* entries), replacing the "pid:role:status" bossList.
+// Readers take an immutable Snapshot; every change publishes a new snapshot with a higher version,
+// so an election result replaces the whole table in one step and readers never see it half-built.
+// The table only ever holds a handful of entries, so lookups by PID or role are constant time.
+public class LeadershipTable {
+
+    public enum Liveness {
+        ALIVE("alive"),
+        DEAD("dead");
+
+        private final String label;
+
+        Liveness(String label) {
+            this.label = label;
+        }
+
+        public String label() {
+            return label;
+        }
+    }
+
+    public static final class Entry {
+        private final int pid;
+        private final Role role;
+        private final Liveness liveness;
+
+        public Entry(int pid, Role role, Liveness liveness) {
+            this.pid = pid;
+            this.role = role;
+            this.liveness = liveness;
+        }
+
+        public int getPid() {
+            return pid;
+        }
+
+        public Role getRole() {
+            return role;
+        }
+
+        public Liveness getLiveness() {
+            return liveness;
+        }
+
+        public boolean isAlive() {
+            return liveness == Liveness.ALIVE;
+        }
+
+        @Override
+        public String toString() {
+            return pid + ":" + role.label() + ":" + liveness.label();
+        }
+    }
+
+    public static final class Snapshot {
+        private static final Entry[] EMPTY = new Entry[0];
+
+        private final long version;
+        private final Entry[] entries;
+        // alive entry per role if there is one, otherwise the first entry with that role
+        private final Entry[] byRole = new Entry[Role.values().length];
+
+        Snapshot(long version, Entry[] entries) {
+            this.version = version;
+            this.entries = entries;
+            for (Entry e : entries) {
+                int r = e.role.ordinal();
+                if (byRole[r] == null || (!byRole[r].isAlive() && e.isAlive())) {
+                    byRole[r] = e;
+                }
+            }
+        }
+
+        public long getVersion() {
+            return version;
+        }
+
+        public int size() {
+            return entries.length;
+        }
+
+        public boolean isEmpty() {
+            return entries.length == 0;
+        }
+
+        public Entry get(int index) {
+            return entries[index];
+        }
+
+        public Entry byPid(int pid) {
+            for (Entry e : entries) {
+                if (e.pid == pid) {
+                    return e;
+                }
+            }
+            return null;
+        }
+
+        public Entry byRole(Role role) {
+            return byRole[role.ordinal()];
+        }
+
+        @Override
+        public String toString() {
+            return Arrays.toString(entries);
+        }
+    }
+
+    // time-bounded claim on the Boss role: the Boss renews it (see FailureDetector), and while it has not
+    // expired every node takes its holder as the leader without looking at heartbeats or the table
+    public static final class Lease {
+        private final int pid;
+        private final int term;
+        private final long expiresAt;
+
+        public Lease(int pid, int term, long expiresAt) {
+            this.pid = pid;
+            this.term = term;
+            this.expiresAt = expiresAt;
+        }
+
+        public int getPid() {
+            return pid;
+        }
+
+        public int getTerm() {
+            return term;
+        }
+
+        public long getExpiresAt() {
+            return expiresAt;
+        }
+
+        public boolean isValid(long now) {
+            return now < expiresAt;
+        }
+
+        @Override
+        public String toString() {
+            return pid + "@" + term + " until " + expiresAt;
+        }
+    }
+
+    private final AtomicReference<Snapshot> current = new AtomicReference<>(new Snapshot(0, Snapshot.EMPTY));
+    private volatile Lease lease;
+    // told about every published snapshot, possibly out of version order under contention
+    private volatile Consumer<Snapshot> changeListener;
+
+    public Snapshot snapshot() {
+        return current.get();
+    }
+
+    public void setChangeListener(Consumer<Snapshot> changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    private void changed() {
+        Consumer<Snapshot> l = changeListener;
+        if (l != null) {
+            l.accept(current.get());
+        }
+    }
+
+    // PID holding a valid lease, -1 if none; a single volatile read
+    public int currentLeader(long now) {
+        Lease l = lease;
+        return l != null && l.isValid(now) ? l.pid : -1;
+    }
+
+    public boolean holdsLease(int pid, long now) {
+        Lease l = lease;
+        return l != null && l.pid == pid && l.isValid(now);
+    }
+
+    public Lease getLease() {
+        return lease;
+    }
+
+    // extends or grants the lease; another PID only takes over once the current lease has expired
+    // or it comes from a newer term. Returns false if the renewal was refused
+    public synchronized boolean renewLease(int pid, int term, long expiresAt, long now) {
+        Lease l = lease;
+        if (l != null && l.pid != pid && l.isValid(now) && term <= l.term) {
+            return false;
+        }
+        if (l == null || l.pid != pid || term > l.term || expiresAt > l.expiresAt) {
+            lease = new Lease(pid, term, expiresAt);
+        }
+        return true;
+    }
+
+    // a confirmed death ends the holder's lease right away, failover does not wait for it to run out
+    private synchronized void endLease(int pid) {
+        Lease l = lease;
+        if (l != null && l.pid == pid) {
+            lease = null;
+        }
+    }
+
+    public long getVersion() {
+        return current.get().version;
+    }
+
+    public boolean isEmpty() {
+        return current.get().isEmpty();
+    }
+
+    public boolean contains(int pid) {
+        return current.get().byPid(pid) != null;
+    }
+
+    public Entry byPid(int pid) {
+        return current.get().byPid(pid);
+    }
+
+    public Entry byRole(Role role) {
+        return current.get().byRole(role);
+    }
+
+    // result of a completed election, 0 means the role stays empty
+    public void replace(int bossPid, int deputy1Pid, int deputy2Pid) {
+        List<Entry> entries = new ArrayList<>(3);
+        entries.add(new Entry(bossPid, Role.BOSS, Liveness.ALIVE));
+        if (deputy1Pid != 0) {
+            entries.add(new Entry(deputy1Pid, Role.DEPUTY1, Liveness.ALIVE));
+        }
+        if (deputy2Pid != 0) {
+            entries.add(new Entry(deputy2Pid, Role.DEPUTY2, Liveness.ALIVE));
+        }
+        Entry[] next = entries.toArray(Snapshot.EMPTY);
+        Snapshot s;
+        do {
+            s = current.get();
+        } while (!current.compareAndSet(s, new Snapshot(s.version + 1, next)));
+        changed();
+    }
+
+    // insert or overwrite the entry for pid
+    public void put(int pid, Role role, Liveness liveness) {
+        Entry entry = new Entry(pid, role, liveness);
+        Snapshot s;
+        Entry[] next;
+        do {
+            s = current.get();
+            int i = indexOf(s.entries, pid);
+            if (i >= 0) {
+                next = s.entries.clone();
+                next[i] = entry;
+            } else {
+                next = Arrays.copyOf(s.entries, s.entries.length + 1);
+                next[s.entries.length] = entry;
+            }
+        } while (!current.compareAndSet(s, new Snapshot(s.version + 1, next)));
+        changed();
+    }
+
+    // put(pid, role, ALIVE) unless pid is already listed with that role
+    public void putIfAbsent(int pid, Role role) {
+        Entry e = byPid(pid);
+        if (e == null || e.role != role) {
+            put(pid, role, Liveness.ALIVE);
+        }
+    }
+
+    // marks pid dead if it is listed with the given role
+    public void markDead(int pid, Role role) {
+        Snapshot s;
+        Entry[] next;
+        do {
+            s = current.get();
+            int i = indexOf(s.entries, pid);
+            if (i < 0 || s.entries[i].role != role || !s.entries[i].isAlive()) {
+                return;
+            }
+            next = s.entries.clone();
+            next[i] = new Entry(pid, role, Liveness.DEAD);
+        } while (!current.compareAndSet(s, new Snapshot(s.version + 1, next)));
+        changed();
+        endLease(pid);
+    }
+
+    // marks pid dead and moves its leadership role to the Ex- form, returns that Ex- role
+    // or null if pid is not listed with a leadership role
+    public Role retire(int pid) {
+        Snapshot s;
+        Entry[] next;
+        Role retired;
+        do {
+            s = current.get();
+            int i = indexOf(s.entries, pid);
+            if (i < 0) {
+                return null;
+            }
+            Role role = s.entries[i].role;
+            if (!role.isLeadership()) {
+                return null;
+            }
+            retired = role.retired();
+            next = s.entries.clone();
+            next[i] = new Entry(pid, retired, Liveness.DEAD);
+        } while (!current.compareAndSet(s, new Snapshot(s.version + 1, next)));
+        changed();
+        endLease(pid);
+        return retired;
+    }
+
+    public void remove(int pid) {
+        Snapshot s;
+        Entry[] next;
+        do {
+            s = current.get();
+            int i = indexOf(s.entries, pid);
+            if (i < 0) {
+                return;
+            }
+            next = new Entry[s.entries.length - 1];
+            System.arraycopy(s.entries, 0, next, 0, i);
+            System.arraycopy(s.entries, i + 1, next, i, next.length - i);
+        } while (!current.compareAndSet(s, new Snapshot(s.version + 1, next)));
+        changed();
+        endLease(pid);
+    }
+
+    private static int indexOf(Entry[] entries, int pid) {
+        for (int i = 0; i < entries.length; i++) {
+            if (entries[i].pid == pid) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    @Override
+    public String toString() {
+        return current.get().toString();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,226 @@
+package com.example;
+
+import java.util.Iterator;
+
+// Per-peer link quality from the beat numbers and send timestamps heartbeats carry.
+// Loss and reordering come from gaps in a peer's beat numbers (a 64-beat window tells a late beat from a
+// duplicate). One-way delay is receive time minus the peer's send time, which includes the offset between
+// the two clocks; the minimum over the last 64..128 beats is taken as the propagation baseline, so the
+// queueing delay above it is what a slow pipe (broker backlog, congested network) adds. A peer whose
+// heartbeats arrive on time but with gaps in their numbers is losing them; one whose beats are complete
+// but late has a slow pipe; one whose beats are complete and on time but far apart is itself slow.
+public class LinkStats {
+    private static final int WINDOW = 64;
+    // EWMA weights: loss over roughly the last 16 beats, delay like TCP's SRTT, jitter like RFC 3550
+    private static final double LOSS_GAIN = 1.0 / 16;
+    private static final double DELAY_GAIN = 1.0 / 8;
+    private static final double JITTER_GAIN = 1.0 / 16;
+
+    private final IntMap<Peer> peers = new IntMap<>();
+
+    // beat > 0 and sentAt from the peer's clock, now from this node's
+    public void record(int pid, long beat, long sentAt, long now) {
+        Peer p = peers.get(pid);
+        if (p == null) {
+            p = peers.computeIfAbsent(pid, Peer::new);
+        }
+        p.record(beat, sentAt, now);
+    }
+
+    // null when no numbered heartbeat has arrived from pid
+    public Link get(int pid) {
+        Peer p = peers.get(pid);
+        return p == null ? null : p.snapshot();
+    }
+
+    public void remove(int pid) {
+        peers.remove(pid);
+    }
+
+    public interface PeerVisitor {
+        void visit(int pid, Link link);
+    }
+
+    public void forEachPeer(PeerVisitor visitor) {
+        Iterator<Peer> it = peers.values();
+        while (it.hasNext()) {
+            Peer p = it.next();
+            visitor.visit(p.pid, p.snapshot());
+        }
+    }
+
+    private static final class Peer {
+        private final int pid;
+        private long first;
+        private long highest;
+        private long highestSentAt;
+        // bit i set = beat (highest - i) arrived
+        private long window;
+        private long received;
+        private long reordered;
+        private long duplicates;
+        private double lossRate;
+        private boolean hasDelay;
+        private long lastDelay;
+        private double delay;
+        private double jitter;
+        // windowed minimum: this epoch of WINDOW beats and the one before
+        private long epochMin = Long.MAX_VALUE;
+        private long previousMin = Long.MAX_VALUE;
+        private int epochCount;
+
+        Peer(int pid) {
+            this.pid = pid;
+        }
+
+        synchronized void record(long beat, long sentAt, long now) {
+            if (highest == 0 || (beat < highest && sentAt > highestSentAt)) {
+                // first beat, or a lower number sent later: the peer restarted and counts from 1 again
+                restart(beat, sentAt);
+            } else if (beat > highest) {
+                long gap = beat - highest;
+                for (long i = 1; i < Math.min(gap, WINDOW); i++) {
+                    lossRate += LOSS_GAIN * (1 - lossRate);
+                }
+                lossRate -= LOSS_GAIN * lossRate;
+                window = gap >= WINDOW ? 1 : (window << gap) | 1;
+                highest = beat;
+                highestSentAt = sentAt;
+                received++;
+            } else {
+                long offset = highest - beat;
+                if (offset >= WINDOW || (window & (1L << offset)) != 0) {
+                    // a beat too old to tell apart is counted with the duplicates
+                    duplicates++;
+                    return;
+                }
+                // counted as lost when the later beat arrived, take that back
+                window |= 1L << offset;
+                received++;
+                reordered++;
+                lossRate = Math.max(0, lossRate - LOSS_GAIN);
+            }
+            recordDelay(now - sentAt);
+        }
+
+        private void restart(long beat, long sentAt) {
+            first = beat;
+            highest = beat;
+            highestSentAt = sentAt;
+            window = 1;
+            received = 1;
+            reordered = 0;
+            duplicates = 0;
+            lossRate = 0;
+            hasDelay = false;
+            epochMin = Long.MAX_VALUE;
+            previousMin = Long.MAX_VALUE;
+            epochCount = 0;
+        }
+
+        private void recordDelay(long d) {
+            if (hasDelay) {
+                delay += DELAY_GAIN * (d - delay);
+                jitter += JITTER_GAIN * (Math.abs(d - lastDelay) - jitter);
+            } else {
+                delay = d;
+                hasDelay = true;
+            }
+            lastDelay = d;
+            epochMin = Math.min(epochMin, d);
+            if (++epochCount == WINDOW) {
+                // the baseline follows slow clock drift instead of keeping an all-time minimum
+                previousMin = epochMin;
+                epochMin = Long.MAX_VALUE;
+                epochCount = 0;
+            }
+        }
+
+        synchronized Link snapshot() {
+            long baseline = Math.min(epochMin, previousMin);
+            long expected = highest - first + 1;
+            return new Link(highest, received, Math.max(0, expected - received), reordered, duplicates, lossRate,
+                    delay, baseline, Math.max(0, delay - baseline), jitter);
+        }
+    }
+
+    public static final class Link {
+        private final long lastBeat;
+        private final long received;
+        private final long lost;
+        private final long reordered;
+        private final long duplicates;
+        private final double lossRate;
+        private final double delayMillis;
+        private final long minDelayMillis;
+        private final double queueingMillis;
+        private final double jitterMillis;
+
+        public Link(long lastBeat, long received, long lost, long reordered, long duplicates, double lossRate,
+                double delayMillis, long minDelayMillis, double queueingMillis, double jitterMillis) {
+            this.lastBeat = lastBeat;
+            this.received = received;
+            this.lost = lost;
+            this.reordered = reordered;
+            this.duplicates = duplicates;
+            this.lossRate = lossRate;
+            this.delayMillis = delayMillis;
+            this.minDelayMillis = minDelayMillis;
+            this.queueingMillis = queueingMillis;
+            this.jitterMillis = jitterMillis;
+        }
+
+        // highest beat number seen
+        public long getLastBeat() {
+            return lastBeat;
+        }
+
+        public long getReceived() {
+            return received;
+        }
+
+        // beats never seen since the first one, late arrivals are taken back out
+        public long getLost() {
+            return lost;
+        }
+
+        // beats that arrived after a higher-numbered one
+        public long getReordered() {
+            return reordered;
+        }
+
+        public long getDuplicates() {
+            return duplicates;
+        }
+
+        // recent fraction of beats lost, 0..1
+        public double getLossRate() {
+            return lossRate;
+        }
+
+        // smoothed receive minus send time, includes the clock offset between the two nodes
+        public double getDelayMillis() {
+            return delayMillis;
+        }
+
+        // recent minimum of the same, taken as propagation plus clock offset
+        public long getMinDelayMillis() {
+            return minDelayMillis;
+        }
+
+        // smoothed delay above the baseline, independent of the clock offset
+        public double getQueueingMillis() {
+            return queueingMillis;
+        }
+
+        public double getJitterMillis() {
+            return jitterMillis;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("beat=%d lost=%d (%.1f%%) reordered=%d dup=%d queueing=%.1fms jitter=%.1fms",
+                    lastBeat, lost, lossRate * 100, reordered, duplicates, queueingMillis, jitterMillis);
+        }
+    }
+}
\ No newline at end of file
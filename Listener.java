@@ -3,112 +3,309 @@ package com.example;
 import java.time.Duration;
 import java.util.*;
 import java.util.concurrent.*;
-import org.apache.kafka.clients.consumer.ConsumerConfig;
-import org.apache.kafka.clients.consumer.ConsumerRecords;
-import org.apache.kafka.clients.consumer.KafkaConsumer;
-import org.apache.kafka.clients.producer.ProducerRecord;
-import org.apache.kafka.clients.consumer.ConsumerRecord;
+import java.util.function.IntConsumer;
 
-public class Listener extends Thread {
+public class Listener extends Thread implements NodeExecutor.Step {
     private final ProcessNode node;
-    private final Map<Integer, Long> heartbeatMap;
+    private final PhiAccrualDetector phiDetector = new PhiAccrualDetector();
+    // loss / reordering / delay per sender, from the beat numbers and send times on heartbeats
+    private final LinkStats links = new LinkStats();
+    private final TimerWheel deadlines;
     private volatile boolean running = true;
-    private final KafkaConsumer<String, String> consumer;
+    // set when running on a shared NodeExecutor instead of this thread
+    private volatile NodeExecutor.Task task;
+    // task mode: true if the transport wakes the task on arrival, false if it has to be polled
+    private volatile boolean notified;
+    private final Transport transport;
+    private final Transport.Handler dispatcher = this::dispatch;
+    // election / promotion / death handling runs here, off the polling thread
+    private final ControlStage control;
+    private final NodeMetrics metrics;
+    private long nextStatusAt = 0;
     private Map<Integer, Double> deputy2Candidates = new ConcurrentHashMap<>();
+    // null unless the node runs gossip membership instead of all-to-all heartbeats
+    private final GossipMembership gossip;
+    private final Prober prober;
+    private final Clock clock;
+    // ring mode: null otherwise
+    private final MonitorRing ring;
+    // ring mode: a death announced by another node, which this node does not monitor itself
+    private volatile IntConsumer remoteDeathHandler;
+    // ring mode: answer to a JOIN, only sent from the polling thread
+    private final Message joinReply;
+
+    public Listener(ProcessNode node) {
+        this(node, null);
+    }
 
-    public Listener(ProcessNode node, Properties kafkaProps) {
+    public Listener(ProcessNode node, GossipMembership gossip) {
         this.node = node;
-        this.heartbeatMap = new ConcurrentHashMap<>();
+        this.gossip = gossip;
+        this.prober = gossip != null ? gossip.getProber() : new Prober(node);
+        this.metrics = node.getMetrics();
+        this.clock = node.getClock();
+        this.deadlines = new TimerWheel(10, 1024, clock);
+        this.ring = node.getMonitorRing();
+        this.joinReply = new Message(MessageType.HEARTBEAT, node.getPid());
+        metrics.setPeers(phiDetector);
+        metrics.setLinks(links);
+        this.control = new ControlStage("Listener-control-" + node.getPid(), this::handleControl,
+                metrics, clock, 1024);
+
+        this.transport = node.getTransport();
+        List<String> topics = new ArrayList<>(Arrays.asList("dead-topic", "rolechange-topic",
+                "election-topic", "promotion-topic", "election-deputy-topic", "lease-topic",
+                ProcessNode.inboxTopic(node.getPid())));
+        if (ring != null) {
+            // heartbeats arrive point-to-point from the nodes this one monitors
+            topics.add(MonitorRing.JOIN_TOPIC);
+        } else if (gossip == null) {
+            topics.add("heartbeat-topic");
+        } else {
+            // gossip mode: no heartbeat broadcast, only probes addressed to this node
+            topics.add(GossipMembership.JOIN_TOPIC);
+        }
+        transport.subscribe(topics);
+    }
+
+    // joining a running cluster: take its current view before detecting anything, then let the next joiner
+    // know about this node. It reads the state topic, so FailureDetector.prepare() calls it on start,
+    // not the constructor.
+    void bootstrap() {
+        int known = StateTopic.bootstrap(node);
+        if (known > 0) {
+            System.out.println("Process " + node.getPid() + " loaded " + known + " members, term " + node.getTerm()
+                    + " and BossList=" + node.getLeadership() + " from " + StateTopic.TOPIC);
+            node.announceRoleChange(node.getRole());
+        }
+
+        // members restored by ProcessNode.enablePersistence() or StateTopic get a deadline as if just heard from,
+        // unless a heartbeat already gave them one (ring mode: the detector monitors successors once the
+        // ring is built)
+        long now = clock.millis();
+        for (int pid : node.getAliveList()) {
+            if (pid != node.getPid() && ring == null && !deadlines.isScheduled(pid)) {
+                phiDetector.heartbeat(pid, now);
+                deadlines.schedule(pid, phiDetector.suspicionDeadline(pid));
+            }
+        }
+    }
+
+    public GossipMembership getGossip() {
+        return gossip;
+    }
+
+    public Prober getProber() {
+        return prober;
+    }
 
-        Properties props = new Properties();
-        props.putAll(kafkaProps);
-        props.put(ConsumerConfig.GROUP_ID_CONFIG, "listener-" + node.getPid());
-        props.put(ConsumerConfig.AUTO_OFFSET_RESET_CONFIG, "latest");
+    public MonitorRing getRing() {
+        return ring;
+    }
 
-        this.consumer = new KafkaConsumer<>(props);
-        consumer.subscribe(Arrays.asList("heartbeat-topic", "dead-topic", "rolechange-topic",
-                "election-topic", "promotion-topic", "election-deputy-topic"));
+    public void setRemoteDeathHandler(IntConsumer remoteDeathHandler) {
+        this.remoteDeathHandler = remoteDeathHandler;
     }
 
+    // snapshot of the last heartbeat per PID, the live timestamps are kept in the node's MembershipTable
     public Map<Integer, Long> getHeartbeatMap() {
-        return heartbeatMap;
+        return node.getMembership().heartbeatSnapshot();
+    }
+
+    public PhiAccrualDetector getPhiDetector() {
+        return phiDetector;
+    }
+
+    public LinkStats getLinks() {
+        return links;
+    }
+
+    public TimerWheel getDeadlines() {
+        return deadlines;
     }
 
     @Override
     public void run() {
+        control.start();
         try {
+            // poll continuously, each message is handled as soon as it arrives
             while (running) {
-                ConsumerRecords<String, String> records = consumer.poll(Duration.ofMillis(500));
-                for (ConsumerRecord<String, String> record : records) {
-                    String topic = record.topic();
-                    String value = record.value();
-
-                    switch (topic) {
-                        case "heartbeat-topic":
-                            handleHeartbeat(value);
-                            break;
-                        case "dead-topic":
-                            handleDeath(value);
-                            break;
-                        case "rolechange-topic":
-                            handleRoleChange(value);
-                            break;
-                        case "election-topic":
-                            handleElection(value);
-                            break;
-                        case "promotion-topic":
-                            handlePromotion(value);
-                            break;
-                        case "election-deputy-topic":
-                            handleDeputyElection(value);
-                            break;
-                    }
-                }
-
-                // debug output - เฉพาะ Boss เท่านั้น
-                if (node.getRole().equals("Boss")) {
-                    System.out.println(
-                            "PID: " + node.getPid() + "(" + node.getRole() + ") AliveList=" + node.getAliveList());
-                    System.out.println(
-                            "PID: " + node.getPid() + "(" + node.getRole() + ") BossList=" + node.getBossList());
-                }
-
-                Thread.sleep(1000);
+                transport.poll(Duration.ofMillis(100), dispatcher);
+                node.publishView();
+                printStatus(clock.millis());
             }
         } catch (InterruptedException e) {
             running = false;
         } finally {
-            consumer.close();
+            stopped();
+        }
+    }
+
+    // runs on a shared executor instead of this thread, shutdown() works the same way
+    public void start(NodeExecutor executor) {
+        control.start(executor);
+        NodeExecutor.Task t = executor.submit("Listener-" + node.getPid(), this);
+        task = t;
+        // woken per arrival when the transport supports it, otherwise poll every 10 ms
+        notified = transport.setReadListener(() -> t.wake(clock.millis()));
+    }
+
+    // task mode: drain whatever has arrived without blocking
+    @Override
+    public long step(long now) throws InterruptedException {
+        transport.poll(Duration.ZERO, dispatcher);
+        node.publishView();
+        printStatus(now);
+        return notified ? nextStatusAt : now + 10;
+    }
+
+    @Override
+    public void stopped() {
+        transport.setReadListener(null);
+        control.shutdown();
+        transport.unsubscribe();
+    }
+
+    private void printStatus(long now) {
+        if (now < nextStatusAt) {
+            return;
+        }
+        nextStatusAt = now + 1000;
+        // debug output - เฉพาะ Boss เท่านั้น
+        if (node.getRole().equals("Boss")) {
+            LeadershipTable.Snapshot leaders = node.getLeadership().snapshot();
+            node.event(EventType.STATUS, leaderPid(leaders, Role.BOSS), null, node.getMembership().aliveCount(),
+                    node.getMembership().deadCount(), leaderPid(leaders, Role.DEPUTY1),
+                    leaderPid(leaders, Role.DEPUTY2), 0);
+        }
+    }
+
+    private static int leaderPid(LeadershipTable.Snapshot leaders, Role role) {
+        LeadershipTable.Entry e = leaders.byRole(role);
+        return e == null ? 0 : e.getPid();
+    }
+
+    // fast path on the polling thread: liveness and probes are handled inline, everything else is
+    // copied to the serialized control stage (package-private for benchmarks/)
+    void dispatch(String topic, Message msg) {
+        long received = System.nanoTime();
+        msg.setReceivedAt(received);
+        // any message proves its sender is alive, HeartbeatSender only sends explicit heartbeats when idle
+        // (in gossip mode liveness comes from probes instead)
+        if (gossip == null) {
+            handleHeartbeat(msg);
+        } else if (!node.getMembership().isDead(msg.getPid())) {
+            // no phi here, only keep the last-heard time the detection latency is measured from
+            node.getMembership().recordHeartbeat(msg.getPid(), clock.millis());
+        }
+
+        switch (msg.getType()) {
+            case HEARTBEAT:
+                // beat 0: a JOIN reply, not part of the sender's numbered stream
+                if (msg.getBeat() > 0) {
+                    links.record(msg.getPid(), msg.getBeat(), msg.getSentAt(), clock.millis());
+                }
+                break;
+            case LEASE:
+                // a lease from an older term is a leftover of a previous Boss
+                if (msg.getTerm() >= node.getTerm()) {
+                    long now = clock.millis();
+                    node.getLeadership().renewLease(msg.getPid(), msg.getTerm(), now + node.getLeaseDuration(), now);
+                }
+                break;
+            case JOIN:
+                if (gossip != null) {
+                    gossip.handle(msg, clock.millis());
+                } else if (ring != null && msg.getPid() != node.getPid()) {
+                    // let the newcomer learn this member (a newcomer hears from all n once, not per interval)
+                    node.send(ProcessNode.inboxTopic(msg.getPid()), joinReply);
+                }
+                break;
+            case PING:
+            case ACK:
+            case PING_REQ: {
+                long now = clock.millis();
+                if (gossip != null) {
+                    gossip.handle(msg, now);
+                }
+                prober.handle(msg, now);
+                break;
+            }
+            default:
+                if (!control.offer(topic, msg)) {
+                    // stage was full, polling waited for it rather than drop or reorder a control message
+                    metrics.recordControlOverflow();
+                }
+                return;
         }
+        long done = System.nanoTime();
+        metrics.recordHeartbeatPath(done - received);
+        metrics.recordHandler(topic, done - received);
     }
 
-    private void handlePromotion(String msg) {
-        if (msg.equals("PROMOTE:Deputy2_TO_Deputy1") && node.getRole().equals("Deputy2")) {
+    private void handleControl(String topic, Message msg) {
+        long started = System.nanoTime();
+        // a death is a fact whatever the term; anything else from an older term is a leftover of a
+        // finished election (ELECTION checks its own term, see handleElection, and anti-entropy entries
+        // carry the term of each fact)
+        MessageType type = msg.getType();
+        if (type != MessageType.DEAD && type != MessageType.ELECTION && type != MessageType.DIGEST
+                && type != MessageType.DELTA && !node.observeTerm(msg.getTerm())) {
+            metrics.recordStaleMessage();
+            return;
+        }
+        switch (msg.getType()) {
+            case DEAD:
+                handleDeath(msg);
+                break;
+            case ROLE_CHANGE:
+                handleRoleChange(msg);
+                break;
+            case ELECTION:
+                handleElection(msg);
+                break;
+            case PROMOTE_DEPUTY2:
+            case NEW_DEPUTY2:
+                handlePromotion(msg);
+                break;
+            case ELECT_DEPUTY2_REQUEST:
+            case DEPUTY2_CANDIDATE:
+                handleDeputyElection(msg);
+                break;
+            case DIGEST:
+                node.getAntiEntropy().handleDigest(msg);
+                break;
+            case DELTA: {
+                // a missed DEAD / ROLE_CHANGE, handled as if it had arrived on its topic
+                Message fact = new Message();
+                if (node.getAntiEntropy().handleDelta(msg, fact)) {
+                    handleControl(topic, fact);
+                }
+                break;
+            }
+            default:
+                break;
+        }
+        // one control message is one batch: readers never see e.g. an election half applied
+        node.publishView();
+        metrics.recordHandler(topic, System.nanoTime() - started);
+    }
+
+    private void handlePromotion(Message msg) {
+        if (msg.getType() == MessageType.PROMOTE_DEPUTY2 && node.getRole().equals("Deputy2")) {
             node.setRole("Deputy1");
             // เฉพาะตัวที่เป็น Boss หลังจากได้เป็น Deputy1 จึงจะประกาศ
             if (node.getRole().equals("Boss")) {
-                System.out.println("Process " + node.getPid() + " promoted from Deputy2 to Deputy1");
+                node.event(EventType.PROMOTION, node.getPid(), Role.DEPUTY1);
             }
-        } else if (msg.startsWith("NEW_DEPUTY2:")) {
-            // format: NEW_DEPUTY2:pid
-            String[] parts = msg.split(":");
-            int newDeputy2Pid = Integer.parseInt(parts[1]);
+        } else if (msg.getType() == MessageType.NEW_DEPUTY2) {
+            int newDeputy2Pid = msg.getSubject();
 
             // ทุกตัวอัปเดต roleMap และ bossList
-            node.getRoleMap().put(newDeputy2Pid, "Deputy2");
+            node.putRole(newDeputy2Pid, "Deputy2");
 
             // อัปเดต bossList - ตรวจสอบไม่ให้ซ้ำ
-            boolean alreadyExists = false;
-            for (String entry : node.getBossList()) {
-                if (entry.startsWith(newDeputy2Pid + ":Deputy2:")) {
-                    alreadyExists = true;
-                    break;
-                }
-            }
-
-            if (!alreadyExists) {
-                node.getBossList().add(newDeputy2Pid + ":Deputy2:alive");
-            }
+            node.getLeadership().putIfAbsent(newDeputy2Pid, Role.DEPUTY2);
 
             if (node.getPid() == newDeputy2Pid) {
                 node.setRole("Deputy2");
@@ -116,36 +313,33 @@ public class Listener extends Thread {
 
             // เฉพาะ Boss เท่านั้นที่ประกาศ
             if (node.getRole().equals("Boss")) {
-                System.out.println("PID: " + node.getPid() + "(" + node.getRole() + ") said Process " + node.getPid()
-                        + " acknowledged new Deputy2: PID " + newDeputy2Pid);
+                node.event(EventType.DEPUTY2_ELECTED, newDeputy2Pid, Role.DEPUTY2, 1, 0, 0, 0, 0);
             }
         }
     }
 
-    private void handleDeputyElection(String msg) {
-        if (msg.equals("ELECT_DEPUTY2:REQUEST") && node.getRole().equals("Follower")) {
+    private void handleDeputyElection(Message msg) {
+        if (msg.getType() == MessageType.ELECT_DEPUTY2_REQUEST && node.getRole().equals("Follower")) {
             // ส่งคะแนนของตัวเองเพื่อแข่งขันเป็น Deputy2
-            double uptimeScore = (System.currentTimeMillis() - node.getStartTime()) / 1000.0;
-            double loadScore = new Random().nextDouble() * 10;
+            double uptimeScore = (clock.millis() - node.getStartTime()) / 1000.0;
+            double loadScore = node.getRandom().nextDouble() * 10;
             double score = uptimeScore * 0.6 + (10.0 - loadScore) * 0.4;
 
-            String response = "DEPUTY2_CANDIDATE:" + node.getPid() + ":" + score;
-            node.getProducer().send(new ProducerRecord<>("election-deputy-topic", response));
+            node.send("election-deputy-topic",
+                    new Message(MessageType.DEPUTY2_CANDIDATE, node.getPid()).setScore(score));
 
             // เฉพาะ Boss เท่านั้นที่ประกาศการส่ง candidate score
             if (node.getRole().equals("Boss")) {
-                System.out.println("Process " + node.getPid() + " sent Deputy2 candidate score: " + score);
+                node.event(EventType.DEPUTY2_CANDIDATE, node.getPid(), null, 0, 0, 0, 0, score);
             }
-        } else if (msg.startsWith("DEPUTY2_CANDIDATE:")) {
+        } else if (msg.getType() == MessageType.DEPUTY2_CANDIDATE) {
             handleDeputy2Candidates(msg);
         }
     }
 
-    private void handleDeputy2Candidates(String msg) {
-        // format: DEPUTY2_CANDIDATE:pid:score
-        String[] parts = msg.split(":");
-        int candidatePid = Integer.parseInt(parts[1]);
-        double score = Double.parseDouble(parts[2]);
+    private void handleDeputy2Candidates(Message msg) {
+        int candidatePid = msg.getPid();
+        double score = msg.getScore();
 
         // ทุกตัวเก็บข้อมูล candidates
         deputy2Candidates.put(candidatePid, score);
@@ -160,9 +354,8 @@ public class Listener extends Thread {
 
         // เฉพาะ Boss เท่านั้นที่ประกาศสถานะและตัดสินผล
         if (node.getRole().equals("Boss")) {
-            System.out.println("PID: " + node.getPid() + "(" + node.getRole() + ") said Process " + node.getPid()
-                    + " Deputy2 election status: " +
-                    deputy2Candidates.size() + "/" + followerCount + " candidates");
+            node.event(EventType.DEPUTY2_VOTES, node.getPid(), null, deputy2Candidates.size(), (int) followerCount,
+                    0, 0, 0);
 
             if (deputy2Candidates.size() >= followerCount && followerCount > 0) {
                 // หา Follower ที่มีคะแนนสูงสุด
@@ -179,11 +372,10 @@ public class Listener extends Thread {
                     int newDeputy2 = winner.get().getKey();
 
                     // ประกาศ Deputy2 ใหม่
-                    String announcement = "NEW_DEPUTY2:" + newDeputy2;
-                    node.getProducer().send(new ProducerRecord<>("promotion-topic", announcement));
+                    node.send("promotion-topic",
+                            new Message(MessageType.NEW_DEPUTY2, node.getPid()).setSubject(newDeputy2));
 
-                    System.out.println("PID: " + node.getPid() + "(" + node.getRole() + ") said Process "
-                            + node.getPid() + " elected new Deputy2: PID " + newDeputy2);
+                    node.event(EventType.DEPUTY2_ELECTED, newDeputy2, Role.DEPUTY2);
                 }
 
                 // ล้างข้อมูลการเลือกตั้ง
@@ -197,146 +389,196 @@ public class Listener extends Thread {
         }
     }
 
-    private void handleHeartbeat(String msg) {
-        // format: HEARTBEAT:pid
-        String[] parts = msg.split(":");
-        int pid = Integer.parseInt(parts[1]);
-        heartbeatMap.put(pid, System.currentTimeMillis());
+    private void handleHeartbeat(Message msg) {
+        recordHeartbeat(msg.getPid(), clock.millis());
+    }
 
-        if (!node.getAliveList().contains(pid)) {
-            node.getAliveList().add(pid);
+    // also used when a probe confirms a PID whose own messages were late
+    public void recordHeartbeat(int pid, long now) {
+        node.getMembership().recordHeartbeat(pid, now);
+        if (ring != null && !ring.isMonitored(pid)) {
+            // ring mode: only successors are watched, anyone else is just known to be alive
+            metrics.recordHeartbeat(-1);
+            node.getMembership().markAlive(pid);
+            return;
         }
+        metrics.recordHeartbeat(phiDetector.heartbeat(pid, now));
+        // re-arm this PID's deadline, FailureDetector only wakes up for PIDs that actually expire
+        deadlines.schedule(pid, phiDetector.suspicionDeadline(pid));
+
+        node.getMembership().markAlive(pid);
+    }
+
+    // ring mode: pid became a successor, watch it as if just heard from
+    public void startMonitoring(int pid, long now) {
+        phiDetector.heartbeat(pid, now);
+        deadlines.schedule(pid, phiDetector.suspicionDeadline(pid));
+    }
+
+    // ring mode: pid is no longer a successor
+    public void stopMonitoring(int pid) {
+        deadlines.cancel(pid);
+        phiDetector.remove(pid);
+        // the beats it sends elsewhere meanwhile are not lost, start counting afresh if it comes back
+        links.remove(pid);
     }
 
-    private void handleDeath(String msg) {
-        String[] parts = msg.split(":");
-        int deadPid = Integer.parseInt(parts[1]);
-        String deadRole = parts[2];
+    private void handleDeath(Message msg) {
+        int deadPid = msg.getSubject();
 
         // ใช้ deathList เป็นตัวป้องกันการประมวลผลซ้ำ
-        boolean isNewDeath = !node.getDeathList().contains(deadPid);
+        boolean isNewDeath = node.getMembership().markDead(deadPid);
 
         if (isNewDeath) {
-            node.getDeathList().add(deadPid);
-            node.getAliveList().remove((Integer) deadPid);
+            node.getMembership().removeAlive(deadPid);
+            node.markUnstable();
 
             // เฉพาะ Boss เท่านั้นที่ประกาศ และแค่ครั้งแรกเท่านั้น
             if (node.getRole().equals("Boss")) {
-                System.out.println("PID: " + node.getPid() + "(" + node.getRole() +
-                        ") said Death received: PID=" + deadPid + " Role=" + deadRole);
+                node.event(EventType.DEATH_RECEIVED, deadPid, msg.getRole());
             }
         }
+        if (gossip != null) {
+            // gossip mode has no per-node phi detection, the confirmer's broadcast drives failover here
+            gossip.dead(deadPid);
+        }
+        IntConsumer remote = remoteDeathHandler;
+        if (isNewDeath && ring != null && remote != null) {
+            // ring mode: only the dead node's monitors detected it, everyone else fails over from here
+            remote.accept(deadPid);
+        }
         // ถ้าไม่ใช่การตายใหม่ จะไม่ทำอะไรเลย
     }
 
-    private void handleRoleChange(String msg) {
-        // format: ROLECHANGE:pid:newRole
-        String[] parts = msg.split(":");
-        int pid = Integer.parseInt(parts[1]);
-        String newRole = parts[2];
+    private void handleRoleChange(Message msg) {
+        int pid = msg.getPid();
+        Role role = msg.getRole();
+        String newRole = role.label();
+
+        // two rounds of the same term resolved on different scores: settle it in a new term
+        if (role == Role.BOSS && pid != node.getPid() && node.getRole().equals("Boss")
+                && msg.getTerm() == node.getTerm() && node.startElection()) {
+            node.event(EventType.ELECTION_TRIGGERED, pid, role, 2, 0, 0, 0, 0);
+        }
 
         // ทุกตัวอัปเดต role map และ boss list
-        node.getRoleMap().put(pid, newRole);
+        node.putRole(pid, newRole);
+        node.getAntiEntropy().record(pid, msg.getSeq(), msg.getTerm());
 
         // อัพเดต bossList ให้ถูกต้องตาม role ที่เปลี่ยนไป
-        boolean updated = false;
-        for (int i = 0; i < node.getBossList().size(); i++) {
-            String entry = node.getBossList().get(i);
-            if (entry.startsWith(pid + ":")) {
-                node.getBossList().set(i, pid + ":" + newRole + ":alive");
-                updated = true;
-                break;
-            }
-        }
-
         // ถ้าไม่พบใน bossList และเป็น leadership role ให้เพิ่มเข้าไป
-        if (!updated && (newRole.equals("Boss") || newRole.equals("Deputy1") || newRole.equals("Deputy2"))) {
-            node.getBossList().add(pid + ":" + newRole + ":alive");
+        if (role.isLeadership() || node.getLeadership().contains(pid)) {
+            node.getLeadership().put(pid, role, LeadershipTable.Liveness.ALIVE);
         }
 
         // เฉพาะ Boss เท่านั้นที่ประกาศการเปลี่ยน role
         if (node.getRole().equals("Boss")) {
-            System.out.println("PID: " + node.getPid() + "(" + node.getRole() + ") said Role change: PID=" + pid
-                    + " -> " + newRole);
+            node.event(EventType.ROLE_CHANGE, pid, role);
         }
     }
 
-    private void handleElection(String msg) {
-        String[] parts = msg.split(":");
-        int pid = Integer.parseInt(parts[1]);
-        double score = Double.parseDouble(parts[2]);
-
-        // ทุกตัวเก็บข้อมูล election scores
-        node.getElectionScores().put(pid, score);
+    // package-private for benchmarks/
+    void handleElection(Message msg) {
+        int pid = msg.getPid();
+        double score = msg.getScore();
+        long now = clock.millis();
+
+        // same lock as the node's election state, so the deadline check cannot resolve the round twice
+        synchronized (node) {
+            // a score for an older term, or for a round that has already resolved
+            if (!node.joinElection(msg.getTerm(), now)) {
+                metrics.recordStaleMessage();
+                return;
+            }
 
-        // กำหนดจำนวน process ที่ต้องได้คะแนนครบ
-        if (node.getElectionScores().size() >= node.getAliveList().size()) {
+            // ทุกตัวเก็บข้อมูล election scores
+            node.getElectionScores().put(pid, score);
 
-            // sort score descending, if equal, use higher PID
-            List<Map.Entry<Integer, Double>> sorted = new ArrayList<>(node.getElectionScores().entrySet());
-            sorted.sort((a, b) -> {
-                int scoreCompare = Double.compare(b.getValue(), a.getValue());
-                if (scoreCompare == 0) {
-                    return Integer.compare(b.getKey(), a.getKey());
-                }
-                return scoreCompare;
-            });
-
-            // ใช้ Set เพื่อไม่ให้ซ้ำกัน
-            Set<Integer> assigned = new HashSet<>();
-
-            int bossPid = sorted.get(0).getKey();
-            assigned.add(bossPid);
-
-            int deputy1Pid = 0, deputy2Pid = 0;
-
-            // ลูปหา Deputy1 และ Deputy2
-            for (int i = 1; i < sorted.size(); i++) {
-                int candidate = sorted.get(i).getKey();
-                if (!assigned.contains(candidate)) {
-                    if (deputy1Pid == 0) {
-                        deputy1Pid = candidate;
-                        assigned.add(candidate);
-                    } else if (deputy2Pid == 0) {
-                        deputy2Pid = candidate;
-                        assigned.add(candidate);
-                        break;
-                    }
-                }
+            // every alive member has scored; right after startup the alive list is still filling up,
+            // so until then only the deadline resolves the round
+            if (node.getElectionScores().size() >= node.getMembership().aliveCount()
+                    && now - node.getStartTime() >= node.getElectionTimeout()) {
+                resolveElection(now);
             }
+        }
+    }
 
-            // ทุกตัวอัปเดต BossList
-            node.getBossList().clear();
-            node.getBossList().add(bossPid + ":Boss:alive");
-            if (deputy1Pid != 0)
-                node.getBossList().add(deputy1Pid + ":Deputy1:alive");
-            if (deputy2Pid != 0)
-                node.getBossList().add(deputy2Pid + ":Deputy2:alive");
-
-            // ทุกตัวอัพเดต role ของตัวเอง
-            if (node.getPid() == bossPid) {
-                node.setRole("Boss");
-            } else if (node.getPid() == deputy1Pid) {
-                node.setRole("Deputy1");
-            } else if (node.getPid() == deputy2Pid) {
-                node.setRole("Deputy2");
-            } else {
-                node.setRole("Follower");
+    // resolves the open round with the scores collected so far once its deadline has passed,
+    // called from the FailureDetector loop
+    public void checkElectionDeadline(long now) {
+        synchronized (node) {
+            long deadline = node.getElectionDeadline();
+            if (deadline != 0 && now >= deadline) {
+                resolveElection(now);
             }
+        }
+    }
 
-            // เฉพาะ Boss ใหม่เท่านั้นที่ประกาศผลการเลือกตั้ง
-            if (node.getRole().equals("Boss")) {
-                System.out.println("PID: " + node.getPid() + "(" + node.getRole() + ") said Election complete! Boss="
-                        + bossPid + " D1=" + deputy1Pid + " D2=" + deputy2Pid);
+    private void resolveElection(long now) {
+        // sort score descending, if equal, use higher PID
+        List<Map.Entry<Integer, Double>> sorted = new ArrayList<>(node.getElectionScores().entrySet());
+        sorted.sort((a, b) -> {
+            int scoreCompare = Double.compare(b.getValue(), a.getValue());
+            if (scoreCompare == 0) {
+                return Integer.compare(b.getKey(), a.getKey());
             }
+            return scoreCompare;
+        });
+
+        // ใช้ Set เพื่อไม่ให้ซ้ำกัน
+        Set<Integer> assigned = new HashSet<>();
+
+        int bossPid = sorted.get(0).getKey();
+        assigned.add(bossPid);
+
+        int deputy1Pid = 0, deputy2Pid = 0;
+
+        // ลูปหา Deputy1 และ Deputy2
+        for (int i = 1; i < sorted.size(); i++) {
+            int candidate = sorted.get(i).getKey();
+            if (!assigned.contains(candidate)) {
+                if (deputy1Pid == 0) {
+                    deputy1Pid = candidate;
+                    assigned.add(candidate);
+                } else if (deputy2Pid == 0) {
+                    deputy2Pid = candidate;
+                    assigned.add(candidate);
+                    break;
+                }
+            }
+        }
 
-            // ล้าง election scores สำหรับการเลือกตั้งครั้งต่อไป
-            node.getElectionScores().clear();
+        // ทุกตัวอัปเดต BossList (แทนที่ทั้งตารางในครั้งเดียว)
+        node.getLeadership().replace(bossPid, deputy1Pid, deputy2Pid);
+
+        // ทุกตัวอัพเดต role ของตัวเอง
+        if (node.getPid() == bossPid) {
+            node.setRole("Boss");
+        } else if (node.getPid() == deputy1Pid) {
+            node.setRole("Deputy1");
+        } else if (node.getPid() == deputy2Pid) {
+            node.setRole("Deputy2");
+        } else {
+            node.setRole("Follower");
         }
+
+        // เฉพาะ Boss ใหม่เท่านั้นที่ประกาศผลการเลือกตั้ง
+        if (node.getRole().equals("Boss")) {
+            node.event(EventType.ELECTION_RESULT, bossPid, Role.BOSS, sorted.size(), 0, deputy1Pid, deputy2Pid, 0);
+        }
+
+        // ล้าง election scores สำหรับการเลือกตั้งครั้งต่อไป
+        node.closeElection();
+        metrics.electionCompleted(now);
     }
 
     public void shutdown() {
         running = false;
-        this.interrupt();
+        NodeExecutor.Task t = task;
+        if (t != null) {
+            t.cancel();
+        } else {
+            this.interrupt();
+        }
     }
 }
\ No newline at end of file
@@ -1,5 +1,7 @@
 package com.example;
 
+import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.*;
 
 public class Main {
@@ -8,11 +10,43 @@ public class Main {
         Properties kafkaProps = new Properties();
         kafkaProps.put("bootstrap.servers", "localhost:9092");
         kafkaProps.put("key.serializer", "org.apache.kafka.common.serialization.StringSerializer");
-        kafkaProps.put("value.serializer", "org.apache.kafka.common.serialization.StringSerializer");
+        kafkaProps.put("value.serializer", "org.apache.kafka.common.serialization.ByteBufferSerializer");
         kafkaProps.put("key.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
-        kafkaProps.put("value.deserializer", "org.apache.kafka.common.serialization.StringDeserializer");
+        kafkaProps.put("value.deserializer", "org.apache.kafka.common.serialization.ByteArrayDeserializer");
+
+        // -Dtransport=memory runs every node on an in-process bus instead of Kafka
+        boolean inMemory = "memory".equals(System.getProperty("transport", "kafka"));
+        int nodeCount = Integer.getInteger("nodes", 4);
+        // -Dmembership=gossip replaces all-to-all heartbeats with SWIM-style probing,
+        // -Dmembership=ring has each node watch only -Dring.k successors on a hash ring (see MonitorRing)
+        String membershipMode = System.getProperty("membership", "heartbeat");
+        boolean gossipMode = "gossip".equals(membershipMode);
+        int ringK = "ring".equals(membershipMode) ? Integer.getInteger("ring.k", 3) : 0;
+        // phi only starts a probe now (see Prober), so a false suspicion is cheap
+        double phiThreshold = Double.parseDouble(System.getProperty("phi.threshold", "3.0"));
+        // an election round resolves with the scores it has after this long (ms)
+        long electionTimeout = Long.getLong("election.timeout", 2000);
+        // the Boss lease (ms), renewed every third of it
+        long leaseDuration = Long.getLong("lease.duration", 5000);
+        // every -Dsync.period ms (0 = never) a node compares a digest of its deaths and roles with one peer
+        // and takes over the entries it missed (see AntiEntropy)
+        long syncPeriod = Long.getLong("sync.period", 5000);
+        // -Dstate.dir=DIR persists each node's membership and roles there and restores them on restart
+        String stateDir = System.getProperty("state.dir");
+        // deaths, role changes and elections go through an async event log, echoed to the console;
+        // -Devents.file=PATH also writes them as JSON lines, rolling over every -Devents.max.bytes (default 16 MB)
+        String eventsFile = System.getProperty("events.file");
+        EventLog events = new EventLog(8192, eventsFile != null ? Paths.get(eventsFile) : null,
+                Long.getLong("events.max.bytes", 16 << 20), 5, true);
+        InMemoryBus bus = inMemory ? new InMemoryBus() : null;
+        // -Dexecutor=shared runs every component as a task on one scheduler (-Dexecutor.threads, default
+        // one per core) instead of three threads per node
+        NodeExecutor executor = "shared".equals(System.getProperty("executor", "threads"))
+                ? new NodeExecutor(Integer.getInteger("executor.threads", Runtime.getRuntime().availableProcessors()))
+                : null;
 
         Set<Integer> usedPIDs = new HashSet<>();
+        int pidRange = Math.max(900, nodeCount * 10);
         Random rnd = new Random();
 
         List<ProcessNode> nodes = new ArrayList<>();
@@ -20,33 +54,79 @@ public class Main {
         List<Listener> listeners = new ArrayList<>();
         List<FailureDetector> detectors = new ArrayList<>();
 
-        for (int i = 0; i < 4; i++) {
+        for (int i = 0; i < nodeCount; i++) {
             int pid;
             do {
-                pid = 100 + rnd.nextInt(900);
+                pid = 100 + rnd.nextInt(pidRange);
             } while (usedPIDs.contains(pid));
             usedPIDs.add(pid);
 
-            ProcessNode node = new ProcessNode(pid, kafkaProps);
+            ProcessNode node = inMemory
+                    ? new ProcessNode(pid, bus.connect())
+                    : new ProcessNode(pid, kafkaProps);
+            node.setElectionTimeout(electionTimeout);
+            node.setEventLog(events);
+            node.setLeaseDuration(leaseDuration);
+            node.getAntiEntropy().setPeriod(syncPeriod);
+            if (stateDir != null) {
+                try {
+                    node.enablePersistence(Paths.get(stateDir));
+                } catch (IOException e) {
+                    System.err.println("Process " + pid + " runs without persistence: " + e.getMessage());
+                }
+            }
+            if (ringK > 0) {
+                node.enableMonitorRing(ringK);
+            }
             nodes.add(node);
+            // visible in jconsole / jcmd under com.example:type=NodeMetrics
+            node.getMetrics().register();
 
             HeartbeatSender hb = new HeartbeatSender(node);
             heartbeats.add(hb);
 
-            Listener listener = new Listener(node, kafkaProps);
+            Listener listener = gossipMode ? new Listener(node, new GossipMembership(node)) : new Listener(node);
+            listener.getPhiDetector().setThreshold(phiThreshold);
             listeners.add(listener);
 
             FailureDetector fd = new FailureDetector(node, listener);
             detectors.add(fd);
         }
 
-        // start all threads
-        for (Listener l : listeners)
-            l.start();
-        for (HeartbeatSender hb : heartbeats)
-            hb.start();
-        for (FailureDetector fd : detectors)
-            fd.start();
+        // -Dview.port=PORT serves every node's ClusterView as JSON on 127.0.0.1 (GET /view, /view/<pid>)
+        ViewServer viewServer = null;
+        Integer viewPort = Integer.getInteger("view.port");
+        if (viewPort != null) {
+            try {
+                viewServer = new ViewServer(viewPort, nodes);
+                viewServer.start();
+                System.out.println("Cluster views on http://127.0.0.1:" + viewServer.getPort() + "/view");
+            } catch (IOException e) {
+                System.err.println("Cannot serve cluster views on port " + viewPort + ": " + e.getMessage());
+            }
+        }
+
+        // start all threads (or tasks on the shared executor)
+        for (Listener l : listeners) {
+            if (executor != null)
+                l.start(executor);
+            else
+                l.start();
+        }
+        if (!gossipMode) {
+            for (HeartbeatSender hb : heartbeats) {
+                if (executor != null)
+                    hb.start(executor);
+                else
+                    hb.start();
+            }
+        }
+        for (FailureDetector fd : detectors) {
+            if (executor != null)
+                fd.start(executor);
+            else
+                fd.start();
+        }
 
         System.out.println("All processes started. Running system...");
 
@@ -90,6 +170,18 @@ public class Main {
             fd.shutdown();
         for (ProcessNode node : nodes)
             node.closeProducer();
+        if (executor != null)
+            executor.shutdown();
+        if (viewServer != null)
+            viewServer.stop();
+        events.close();
+
+        // detection / election / handler latency per node
+        for (ProcessNode node : nodes) {
+            System.out.println("PID " + node.getPid() + " lease: " + node.getLeadership().getLease());
+            System.out.println(node.getMetrics().snapshot());
+            node.getMetrics().unregister();
+        }
 
         System.out.println("All threads stopped. System shutdown complete.");
     }
@@ -0,0 +1,31 @@
+package com.example;
+
+// Membership state carried in gossip updates; code() is the wire value, fixed per constant
+public enum MemberState {
+    ALIVE(0),
+    DEAD(1),
+    // failed a direct and an indirect probe, becomes DEAD unless it refutes in time
+    SUSPECT(2);
+
+    private static final MemberState[] BY_CODE = new MemberState[3];
+
+    static {
+        for (MemberState s : values()) {
+            BY_CODE[s.code] = s;
+        }
+    }
+
+    private final byte code;
+
+    MemberState(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    public static MemberState fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,63 @@
+package com.example;
+
+// One membership change as seen by one node, delivered to MembershipEvents subscribers.
+public final class MembershipEvent {
+    public enum Type {
+        // became alive and not dead: first heartbeat, a joiner, or a PID that came back
+        JOINED,
+        // missed heartbeats or a failed probe, still counted as alive while it is probed
+        SUSPECTED,
+        DEAD,
+        ROLE_CHANGED
+    }
+
+    private final Type type;
+    private final long time;
+    private final int node;
+    private final int pid;
+    private final Role role;
+    private final int term;
+
+    MembershipEvent(Type type, long time, int node, int pid, Role role, int term) {
+        this.type = type;
+        this.time = time;
+        this.node = node;
+        this.pid = pid;
+        this.role = role;
+        this.term = term;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    // node clock when the change was applied
+    public long getTime() {
+        return time;
+    }
+
+    // the node that saw the change
+    public int getNode() {
+        return node;
+    }
+
+    // the member the change is about
+    public int getPid() {
+        return pid;
+    }
+
+    // the new role for ROLE_CHANGED, otherwise the role the member had at the time
+    public Role getRole() {
+        return role;
+    }
+
+    public int getTerm() {
+        return term;
+    }
+
+    @Override
+    public String toString() {
+        return type + "{pid=" + pid + " role=" + role.label() + " term=" + term + " seen by " + node + " at " + time
+                + "}";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,246 @@
+package com.example;
+
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Flow;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Push-based membership changes: ProcessNode publishes joined / suspected / dead / role-changed events as
+// it applies them, so routing or rebalancing code reacts right away instead of polling the lists.
+// publish() runs on detector threads and under MembershipTable's member locks, so it never waits for a
+// subscriber: it puts the event in each subscriber's bounded buffer and hands delivery to that
+// subscriber's executor. A subscriber that falls behind loses events according to its Overflow policy,
+// the node itself never slows down. Nothing is allocated while there are no subscribers.
+public final class MembershipEvents implements Flow.Publisher<MembershipEvent> {
+    public enum Overflow {
+        // make room by dropping the oldest buffered event, the subscriber keeps up with the latest changes
+        DROP_OLDEST,
+        // drop the new event, the subscriber still gets the buffered ones in order
+        DROP_NEWEST,
+        // cancel the subscription and signal onError, for subscribers that must not miss a change
+        ERROR
+    }
+
+    public static final int DEFAULT_CAPACITY = 256;
+
+    private final CopyOnWriteArrayList<Subscription> subscriptions = new CopyOnWriteArrayList<>();
+    private final AtomicLong dropped = new AtomicLong();
+    private volatile boolean closed;
+
+    // DEFAULT_CAPACITY, DROP_OLDEST, delivered on the common pool
+    @Override
+    public void subscribe(Flow.Subscriber<? super MembershipEvent> subscriber) {
+        subscribe(subscriber, DEFAULT_CAPACITY, Overflow.DROP_OLDEST, ForkJoinPool.commonPool());
+    }
+
+    // every event published after this returns is buffered for the subscriber; its onSubscribe, onNext,
+    // onError and onComplete run on executor, one at a time
+    public void subscribe(Flow.Subscriber<? super MembershipEvent> subscriber, int capacity, Overflow overflow,
+            Executor executor) {
+        Objects.requireNonNull(subscriber, "subscriber");
+        Objects.requireNonNull(overflow, "overflow");
+        Objects.requireNonNull(executor, "executor");
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        Subscription s = new Subscription(subscriber, capacity, overflow, executor);
+        subscriptions.add(s);
+        if (closed) {
+            s.complete();
+        } else {
+            s.signal();
+        }
+    }
+
+    public boolean hasSubscribers() {
+        return !subscriptions.isEmpty();
+    }
+
+    public int getSubscriberCount() {
+        return subscriptions.size();
+    }
+
+    // events lost to full buffers, over all subscribers
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public void publish(MembershipEvent.Type type, long time, int node, int pid, Role role, int term) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        MembershipEvent event = new MembershipEvent(type, time, node, pid, role, term);
+        for (Subscription s : subscriptions) {
+            s.offer(event);
+        }
+    }
+
+    // subscribers get onComplete once they have drained what is buffered; later events are not published
+    public void close() {
+        closed = true;
+        for (Subscription s : subscriptions) {
+            s.complete();
+        }
+    }
+
+    private final class Subscription implements Flow.Subscription, Runnable {
+        private final Flow.Subscriber<? super MembershipEvent> subscriber;
+        private final Overflow overflow;
+        private final Executor executor;
+        // ring buffer and the flags below, guarded by this
+        private final MembershipEvent[] buffer;
+        private int head;
+        private int size;
+        private long demand;
+        private Throwable failure;
+        private boolean completing;
+        private volatile boolean cancelled;
+        // run() is scheduled on the 0 -> 1 transition and keeps draining until it is back to 0
+        private final AtomicInteger wip = new AtomicInteger();
+        // only touched by run()
+        private boolean subscribed;
+
+        Subscription(Flow.Subscriber<? super MembershipEvent> subscriber, int capacity, Overflow overflow,
+                Executor executor) {
+            this.subscriber = subscriber;
+            this.buffer = new MembershipEvent[capacity];
+            this.overflow = overflow;
+            this.executor = executor;
+        }
+
+        void offer(MembershipEvent event) {
+            synchronized (this) {
+                if (cancelled || completing || failure != null) {
+                    return;
+                }
+                if (size == buffer.length) {
+                    dropped.incrementAndGet();
+                    switch (overflow) {
+                        case DROP_OLDEST:
+                            buffer[head] = null;
+                            head = (head + 1) % buffer.length;
+                            size--;
+                            break;
+                        case DROP_NEWEST:
+                            return;
+                        default:
+                            failure = new IllegalStateException("membership subscriber fell " + buffer.length
+                                    + " events behind");
+                            break;
+                    }
+                }
+                if (failure == null) {
+                    buffer[(head + size) % buffer.length] = event;
+                    size++;
+                }
+            }
+            signal();
+        }
+
+        void complete() {
+            synchronized (this) {
+                completing = true;
+            }
+            signal();
+        }
+
+        void signal() {
+            if (wip.getAndIncrement() == 0) {
+                try {
+                    executor.execute(this);
+                } catch (RejectedExecutionException e) {
+                    // nowhere left to deliver
+                    cancel();
+                }
+            }
+        }
+
+        @Override
+        public void request(long n) {
+            synchronized (this) {
+                if (n <= 0) {
+                    // rule 3.9 of the reactive-streams spec
+                    failure = new IllegalArgumentException("request must be positive: " + n);
+                } else {
+                    demand = demand + n < 0 ? Long.MAX_VALUE : demand + n;
+                }
+            }
+            signal();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+            subscriptions.remove(this);
+            synchronized (this) {
+                Arrays.fill(buffer, null);
+                size = 0;
+            }
+        }
+
+        @Override
+        public void run() {
+            int missed = 1;
+            try {
+                while (true) {
+                    drain();
+                    missed = wip.addAndGet(-missed);
+                    if (missed == 0) {
+                        return;
+                    }
+                }
+            } catch (RuntimeException | Error e) {
+                // a subscriber that throws is dropped, it must not stop the others
+                System.err.println("Membership subscriber " + subscriber + " encountered error: " + e.getMessage());
+                cancel();
+                wip.set(0);
+            }
+        }
+
+        private void drain() {
+            if (!subscribed) {
+                subscribed = true;
+                subscriber.onSubscribe(this);
+            }
+            while (!cancelled) {
+                MembershipEvent event;
+                Throwable error;
+                synchronized (this) {
+                    // what was buffered before an overflow still goes out while there is demand
+                    error = null;
+                    event = null;
+                    if (size > 0 && demand > 0) {
+                        event = buffer[head];
+                        buffer[head] = null;
+                        head = (head + 1) % buffer.length;
+                        size--;
+                        if (demand != Long.MAX_VALUE) {
+                            demand--;
+                        }
+                    } else if (failure != null) {
+                        error = failure;
+                    } else if (!(size == 0 && completing)) {
+                        // wait for more demand or events
+                        return;
+                    }
+                }
+                if (event != null) {
+                    subscriber.onNext(event);
+                    continue;
+                }
+                cancel();
+                if (error != null) {
+                    subscriber.onError(error);
+                } else {
+                    subscriber.onComplete();
+                }
+                return;
+            }
+        }
+    }
+}
\ No newline at end of file
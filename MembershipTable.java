@@ -0,0 +1,327 @@
+package com.example;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+// Per-node membership state keyed by PID: alive / suspect / dead flags and the last heartbeat time.
+// Lookups and heartbeat updates are O(1) and allocation-free once a PID has been seen;
+// aliveList() and deathList() expose the flags as live List<Integer> views for existing callers.
+public class MembershipTable {
+
+    private static final class Member {
+        final int pid;
+        volatile boolean alive;
+        volatile boolean dead;
+        volatile boolean suspect; // being probed, still counted as alive
+        volatile long lastHeartbeat; // 0 = no heartbeat on record
+
+        Member(int pid) {
+            this.pid = pid;
+        }
+    }
+
+    // told about every alive / dead transition, e.g. to persist it (see StateLog); exactly one of the
+    // two flags differs from its was* value
+    public interface ChangeListener {
+        void changed(int pid, boolean alive, boolean dead, boolean wasAlive, boolean wasDead);
+    }
+
+    private final IntMap<Member> members = new IntMap<>();
+    private volatile ChangeListener changeListener;
+    private final AtomicInteger aliveCount = new AtomicInteger();
+    private final AtomicInteger deadCount = new AtomicInteger();
+    // bumped on every alive transition, lets MonitorRing tell when to rebuild
+    private final AtomicLong aliveVersion = new AtomicLong();
+    private final List<Integer> aliveView = new View(true);
+    private final List<Integer> deathView = new View(false);
+
+    public void setChangeListener(ChangeListener changeListener) {
+        this.changeListener = changeListener;
+    }
+
+    // called under the member's lock so transitions of one PID are reported in order
+    private void changed(Member m, boolean wasAlive, boolean wasDead) {
+        ChangeListener l = changeListener;
+        if (l != null) {
+            l.changed(m.pid, m.alive, m.dead, wasAlive, wasDead);
+        }
+    }
+
+    private Member member(int pid) {
+        Member m = members.get(pid);
+        if (m == null) {
+            m = members.computeIfAbsent(pid, Member::new);
+        }
+        return m;
+    }
+
+    // returns true if pid was not alive before
+    public boolean markAlive(int pid) {
+        Member m = member(pid);
+        if (m.alive) {
+            return false;
+        }
+        synchronized (m) {
+            if (m.alive) {
+                return false;
+            }
+            m.alive = true;
+            changed(m, false, m.dead);
+        }
+        aliveCount.incrementAndGet();
+        aliveVersion.incrementAndGet();
+        return true;
+    }
+
+    public boolean removeAlive(int pid) {
+        Member m = members.get(pid);
+        if (m == null || !m.alive) {
+            return false;
+        }
+        synchronized (m) {
+            if (!m.alive) {
+                return false;
+            }
+            m.alive = false;
+            changed(m, true, m.dead);
+        }
+        aliveCount.decrementAndGet();
+        aliveVersion.incrementAndGet();
+        return true;
+    }
+
+    // returns true if pid was not dead before
+    public boolean markDead(int pid) {
+        Member m = member(pid);
+        if (m.dead) {
+            return false;
+        }
+        synchronized (m) {
+            if (m.dead) {
+                return false;
+            }
+            m.dead = true;
+            changed(m, m.alive, false);
+        }
+        deadCount.incrementAndGet();
+        return true;
+    }
+
+    public boolean removeDead(int pid) {
+        Member m = members.get(pid);
+        if (m == null || !m.dead) {
+            return false;
+        }
+        synchronized (m) {
+            if (!m.dead) {
+                return false;
+            }
+            m.dead = false;
+            changed(m, m.alive, true);
+        }
+        deadCount.decrementAndGet();
+        return true;
+    }
+
+    public boolean isAlive(int pid) {
+        Member m = members.get(pid);
+        return m != null && m.alive;
+    }
+
+    public boolean isDead(int pid) {
+        Member m = members.get(pid);
+        return m != null && m.dead;
+    }
+
+    // returns true if pid was not suspected before
+    public boolean markSuspect(int pid) {
+        Member m = member(pid);
+        if (m.suspect) {
+            return false;
+        }
+        synchronized (m) {
+            if (m.suspect) {
+                return false;
+            }
+            m.suspect = true;
+        }
+        return true;
+    }
+
+    public boolean clearSuspect(int pid) {
+        Member m = members.get(pid);
+        if (m == null || !m.suspect) {
+            return false;
+        }
+        synchronized (m) {
+            if (!m.suspect) {
+                return false;
+            }
+            m.suspect = false;
+        }
+        return true;
+    }
+
+    public boolean isSuspect(int pid) {
+        Member m = members.get(pid);
+        return m != null && m.suspect;
+    }
+
+    public int aliveCount() {
+        return aliveCount.get();
+    }
+
+    public long getAliveVersion() {
+        return aliveVersion.get();
+    }
+
+    public int deadCount() {
+        return deadCount.get();
+    }
+
+    public void recordHeartbeat(int pid, long now) {
+        member(pid).lastHeartbeat = now;
+    }
+
+    public boolean hasHeartbeat(int pid) {
+        Member m = members.get(pid);
+        return m != null && m.lastHeartbeat != 0;
+    }
+
+    public long lastHeartbeat(int pid) {
+        Member m = members.get(pid);
+        return m == null ? 0 : m.lastHeartbeat;
+    }
+
+    public void clearHeartbeat(int pid) {
+        Member m = members.get(pid);
+        if (m != null) {
+            m.lastHeartbeat = 0;
+        }
+    }
+
+    // snapshot of pid -> last heartbeat for monitoring, allocates
+    public Map<Integer, Long> heartbeatSnapshot() {
+        Map<Integer, Long> snapshot = new HashMap<>();
+        for (Iterator<Member> it = members.values(); it.hasNext();) {
+            Member m = it.next();
+            long last = m.lastHeartbeat;
+            if (last != 0) {
+                snapshot.put(m.pid, last);
+            }
+        }
+        return snapshot;
+    }
+
+    public List<Integer> aliveList() {
+        return aliveView;
+    }
+
+    public List<Integer> deathList() {
+        return deathView;
+    }
+
+    // live, weakly consistent view of one flag; get(i) is O(n), everything else the callers use is O(1)
+    private final class View extends AbstractList<Integer> {
+        private final boolean alive;
+
+        View(boolean alive) {
+            this.alive = alive;
+        }
+
+        private boolean test(Member m) {
+            return alive ? m.alive : m.dead;
+        }
+
+        @Override
+        public int size() {
+            return alive ? aliveCount() : deadCount();
+        }
+
+        @Override
+        public boolean contains(Object o) {
+            if (!(o instanceof Integer)) {
+                return false;
+            }
+            int pid = (Integer) o;
+            return alive ? isAlive(pid) : isDead(pid);
+        }
+
+        @Override
+        public boolean add(Integer pid) {
+            return alive ? markAlive(pid) : markDead(pid);
+        }
+
+        @Override
+        public boolean remove(Object o) {
+            if (!(o instanceof Integer)) {
+                return false;
+            }
+            int pid = (Integer) o;
+            return alive ? removeAlive(pid) : removeDead(pid);
+        }
+
+        @Override
+        public Integer get(int index) {
+            int i = 0;
+            for (Iterator<Integer> it = iterator(); it.hasNext(); i++) {
+                Integer pid = it.next();
+                if (i == index) {
+                    return pid;
+                }
+            }
+            throw new IndexOutOfBoundsException("Index: " + index);
+        }
+
+        @Override
+        public void clear() {
+            for (Iterator<Member> it = members.values(); it.hasNext();) {
+                int pid = it.next().pid;
+                if (alive) {
+                    removeAlive(pid);
+                } else {
+                    removeDead(pid);
+                }
+            }
+        }
+
+        @Override
+        public Iterator<Integer> iterator() {
+            final Iterator<Member> it = members.values();
+            return new Iterator<Integer>() {
+                private Member next = advance();
+
+                private Member advance() {
+                    while (it.hasNext()) {
+                        Member m = it.next();
+                        if (test(m)) {
+                            return m;
+                        }
+                    }
+                    return null;
+                }
+
+                @Override
+                public boolean hasNext() {
+                    return next != null;
+                }
+
+                @Override
+                public Integer next() {
+                    if (next == null) {
+                        throw new NoSuchElementException();
+                    }
+                    int pid = next.pid;
+                    next = advance();
+                    return pid;
+                }
+
+                @Override
+                public void remove() {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,272 @@
+package com.example;
+
+// Control message exchanged between nodes.
+// Instances are mutable so senders and decoders can reuse them; a Message handed to a
+// Transport.Handler is only valid until the handler returns.
+public final class Message {
+    // gossip membership updates piggybacked on JOIN / PING / ACK
+    public static final int MAX_UPDATES = 8;
+    // bucket hashes on a DIGEST
+    public static final int MAX_HASHES = 16;
+
+    private MessageType type;
+    private int pid;
+    private long seq;
+    private int term;
+    private int subject;
+    private Role role;
+    private double score;
+    private long probe;
+    private long beat;
+    private long sentAt;
+    // DELTA: one view entry about subject
+    private MemberState state;
+    private long version;
+    private int subjectTerm;
+    private int hashCount;
+    private long[] hashes;
+    private int updateCount;
+    // allocated on first use so plain control messages stay small
+    private int[] updatePids;
+    private byte[] updateStates;
+    private int[] updateIncarnations;
+    // local only, never encoded: System.nanoTime() when the Listener took the message off the transport
+    private long receivedAt;
+
+    public Message() {
+    }
+
+    public Message(MessageType type, int pid) {
+        reset(type, pid);
+    }
+
+    public Message reset(MessageType type, int pid) {
+        this.type = type;
+        this.pid = pid;
+        this.seq = 0;
+        this.term = 0;
+        this.subject = 0;
+        this.role = null;
+        this.score = 0;
+        this.probe = 0;
+        this.beat = 0;
+        this.sentAt = 0;
+        this.state = null;
+        this.version = 0;
+        this.subjectTerm = 0;
+        this.hashCount = 0;
+        this.updateCount = 0;
+        this.receivedAt = 0;
+        return this;
+    }
+
+    public void copyFrom(Message other) {
+        this.type = other.type;
+        this.pid = other.pid;
+        this.seq = other.seq;
+        this.term = other.term;
+        this.subject = other.subject;
+        this.role = other.role;
+        this.score = other.score;
+        this.probe = other.probe;
+        this.beat = other.beat;
+        this.sentAt = other.sentAt;
+        this.state = other.state;
+        this.version = other.version;
+        this.subjectTerm = other.subjectTerm;
+        this.receivedAt = other.receivedAt;
+        this.hashCount = 0;
+        for (int i = 0; i < other.hashCount; i++) {
+            addHash(other.hashes[i]);
+        }
+        this.updateCount = 0;
+        for (int i = 0; i < other.updateCount; i++) {
+            addUpdate(other.updatePids[i], other.getUpdateState(i), other.updateIncarnations[i]);
+        }
+    }
+
+    public MessageType getType() {
+        return type;
+    }
+
+    // PID of the sender
+    public int getPid() {
+        return pid;
+    }
+
+    public long getReceivedAt() {
+        return receivedAt;
+    }
+
+    public Message setReceivedAt(long receivedAt) {
+        this.receivedAt = receivedAt;
+        return this;
+    }
+
+    public long getSeq() {
+        return seq;
+    }
+
+    public Message setSeq(long seq) {
+        this.seq = seq;
+        return this;
+    }
+
+    // sender's election term, stamped by ProcessNode.send
+    public int getTerm() {
+        return term;
+    }
+
+    public Message setTerm(int term) {
+        this.term = term;
+        return this;
+    }
+
+    // PID the message is about (DEAD, NEW_DEPUTY2)
+    public int getSubject() {
+        return subject;
+    }
+
+    public Message setSubject(int subject) {
+        this.subject = subject;
+        return this;
+    }
+
+    public Role getRole() {
+        return role;
+    }
+
+    public Message setRole(Role role) {
+        this.role = role;
+        return this;
+    }
+
+    public double getScore() {
+        return score;
+    }
+
+    public Message setScore(double score) {
+        this.score = score;
+        return this;
+    }
+
+    // probe id a PING is answered with (PING, ACK)
+    public long getProbe() {
+        return probe;
+    }
+
+    public Message setProbe(long probe) {
+        this.probe = probe;
+        return this;
+    }
+
+    // HEARTBEAT: the sender's heartbeat number, 1, 2, 3... per process; 0 for an unnumbered reply
+    public long getBeat() {
+        return beat;
+    }
+
+    public Message setBeat(long beat) {
+        this.beat = beat;
+        return this;
+    }
+
+    // HEARTBEAT: sender's clock when it sent the beat
+    public long getSentAt() {
+        return sentAt;
+    }
+
+    public Message setSentAt(long sentAt) {
+        this.sentAt = sentAt;
+        return this;
+    }
+
+    // DELTA: whether subject is alive or dead in the sender's view
+    public MemberState getState() {
+        return state;
+    }
+
+    public Message setState(MemberState state) {
+        this.state = state;
+        return this;
+    }
+
+    // DELTA: seq of the subject's latest role announcement the sender knows of (see AntiEntropy)
+    public long getVersion() {
+        return version;
+    }
+
+    public Message setVersion(long version) {
+        this.version = version;
+        return this;
+    }
+
+    // DELTA: term that announcement was made in
+    public int getSubjectTerm() {
+        return subjectTerm;
+    }
+
+    public Message setSubjectTerm(int subjectTerm) {
+        this.subjectTerm = subjectTerm;
+        return this;
+    }
+
+    public int getHashCount() {
+        return hashCount;
+    }
+
+    public long getHash(int i) {
+        return hashes[i];
+    }
+
+    // returns false once MAX_HASHES hashes have been added
+    public boolean addHash(long hash) {
+        if (hashCount == MAX_HASHES) {
+            return false;
+        }
+        if (hashes == null) {
+            hashes = new long[MAX_HASHES];
+        }
+        hashes[hashCount++] = hash;
+        return true;
+    }
+
+    public int getUpdateCount() {
+        return updateCount;
+    }
+
+    public int getUpdatePid(int i) {
+        return updatePids[i];
+    }
+
+    public MemberState getUpdateState(int i) {
+        return MemberState.fromCode(updateStates[i]);
+    }
+
+    public int getUpdateIncarnation(int i) {
+        return updateIncarnations[i];
+    }
+
+    // returns false once MAX_UPDATES updates have been added
+    public boolean addUpdate(int pid, MemberState state, int incarnation) {
+        if (updateCount == MAX_UPDATES) {
+            return false;
+        }
+        if (updatePids == null) {
+            updatePids = new int[MAX_UPDATES];
+            updateStates = new byte[MAX_UPDATES];
+            updateIncarnations = new int[MAX_UPDATES];
+        }
+        updatePids[updateCount] = pid;
+        updateStates[updateCount] = state.code();
+        updateIncarnations[updateCount] = incarnation;
+        updateCount++;
+        return true;
+    }
+
+    @Override
+    public String toString() {
+        return type + "[pid=" + pid + ", seq=" + seq + ", term=" + term + ", subject=" + subject + ", role=" + role
+                + ", score=" + score + ", probe=" + probe + ", beat=" + beat + ", sentAt=" + sentAt + ", state=" + state
+                + ", version=" + version + ", hashes=" + hashCount + ", updates=" + updateCount + "]";
+    }
+}
\ No newline at end of file
@@ -0,0 +1,285 @@
+package com.example;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+// Binary wire format for Message.
+//
+// header (20 bytes): version:u8 type:u8 reserved:u16 pid:i32 seq:i64 term:i32
+// payload by type:
+//   HEARTBEAT                                          beat:i64 sentAt:i64
+//   PROMOTE_DEPUTY2, ELECT_DEPUTY2_REQUEST, LEASE      (none)
+//   DEAD                                               subject:i32 role:u8
+//   ROLE_CHANGE                                        role:u8
+//   ELECTION, DEPUTY2_CANDIDATE                        score:f64
+//   NEW_DEPUTY2                                        subject:i32
+//   JOIN, PING, ACK, PING_REQ                          subject:i32 probe:i64 count:u8
+//                                                      count x (pid:i32 state:u8 incarnation:i32)
+//   DIGEST                                             subject:i32 count:u8 count x hash:i64
+//   DELTA                                              subject:i32 role:u8 state:u8 subjectTerm:i32
+//                                                      version:i64
+//
+// term is the sender's election term (version 2), receivers drop control messages from older terms.
+// beat and sentAt (version 3) let receivers estimate loss, reordering and delay per sender (see LinkStats).
+//
+// Versions: encode always writes VERSION, decode accepts MIN_VERSION up to VERSION, so during a rolling
+// upgrade upgraded nodes still understand the others. Version 1 had a 16-byte header without term (read
+// as 0) and versions before 3 sent HEARTBEAT without a payload (beat 0, i.e. unnumbered). A new version
+// may only append fields, gets a case in headerSize / payloadSize, and leaves them at their reset value
+// for older senders. Nodes still on an older version drop messages of a newer one until they are
+// upgraded too. Type, role and state codes are fixed per constant, not taken from enum order.
+// All values are big-endian. Encoding writes into a caller-owned buffer and decoding fills a
+// caller-owned Message, so neither side allocates.
+public final class MessageCodec {
+    public static final int VERSION = 3;
+    public static final int MIN_VERSION = 1;
+    public static final int HEADER_SIZE = 20;
+    public static final int UPDATE_SIZE = 9;
+    public static final int MAX_SIZE = HEADER_SIZE + Math.max(13 + Message.MAX_UPDATES * UPDATE_SIZE,
+            5 + Message.MAX_HASHES * 8);
+
+    private static final VarHandle INT = MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.BIG_ENDIAN);
+    private static final VarHandle LONG = MethodHandles.byteArrayViewVarHandle(long[].class, ByteOrder.BIG_ENDIAN);
+
+    private MessageCodec() {
+    }
+
+    // writes msg at the buffer's position and advances it
+    public static void encode(Message msg, ByteBuffer buf) {
+        buf.put((byte) VERSION);
+        buf.put(msg.getType().code());
+        buf.putShort((short) 0);
+        buf.putInt(msg.getPid());
+        buf.putLong(msg.getSeq());
+        buf.putInt(msg.getTerm());
+        switch (msg.getType()) {
+            case HEARTBEAT:
+                buf.putLong(msg.getBeat());
+                buf.putLong(msg.getSentAt());
+                break;
+            case DEAD:
+                buf.putInt(msg.getSubject());
+                buf.put(msg.getRole().code());
+                break;
+            case ROLE_CHANGE:
+                buf.put(msg.getRole().code());
+                break;
+            case ELECTION:
+            case DEPUTY2_CANDIDATE:
+                buf.putDouble(msg.getScore());
+                break;
+            case NEW_DEPUTY2:
+                buf.putInt(msg.getSubject());
+                break;
+            case JOIN:
+            case PING:
+            case ACK:
+            case PING_REQ:
+                buf.putInt(msg.getSubject());
+                buf.putLong(msg.getProbe());
+                buf.put((byte) msg.getUpdateCount());
+                for (int i = 0; i < msg.getUpdateCount(); i++) {
+                    buf.putInt(msg.getUpdatePid(i));
+                    buf.put(msg.getUpdateState(i).code());
+                    buf.putInt(msg.getUpdateIncarnation(i));
+                }
+                break;
+            case DIGEST:
+                buf.putInt(msg.getSubject());
+                buf.put((byte) msg.getHashCount());
+                for (int i = 0; i < msg.getHashCount(); i++) {
+                    buf.putLong(msg.getHash(i));
+                }
+                break;
+            case DELTA:
+                buf.putInt(msg.getSubject());
+                buf.put(msg.getRole().code());
+                buf.put(msg.getState().code());
+                buf.putInt(msg.getSubjectTerm());
+                buf.putLong(msg.getVersion());
+                break;
+            default:
+                break;
+        }
+    }
+
+    // decodes the bytes between the buffer's position and limit, returns false if they are not a valid message
+    public static boolean decode(ByteBuffer buf, Message into) {
+        return decode(buf, BUFFER, buf.position(), buf.remaining(), into);
+    }
+
+    // same for a byte[] as delivered by Kafka's ByteArrayDeserializer
+    public static boolean decode(byte[] data, Message into) {
+        return data != null && decode(data, ARRAY, 0, data.length, into);
+    }
+
+    // the one decoder behind both, reading data from offset p through in
+    private static boolean decode(Object data, Bytes in, int p, int len, Message into) {
+        if (len < 2) {
+            return false;
+        }
+        int version = in.get(data, p);
+        MessageType type = MessageType.fromCode(in.get(data, p + 1));
+        if (version < MIN_VERSION || version > VERSION || type == null) {
+            return false;
+        }
+        int header = headerSize(version);
+        if (len < header + payloadSize(type, version)) {
+            return false;
+        }
+        into.reset(type, in.getInt(data, p + 4)).setSeq(in.getLong(data, p + 8))
+                .setTerm(version >= 2 ? in.getInt(data, p + 16) : 0);
+        int b = p + header;
+        int end = p + len;
+        switch (type) {
+            case HEARTBEAT:
+                if (version >= 3) {
+                    into.setBeat(in.getLong(data, b)).setSentAt(in.getLong(data, b + 8));
+                }
+                break;
+            case DEAD:
+                into.setSubject(in.getInt(data, b)).setRole(Role.fromCode(in.get(data, b + 4)));
+                break;
+            case ROLE_CHANGE:
+                into.setRole(Role.fromCode(in.get(data, b)));
+                break;
+            case ELECTION:
+            case DEPUTY2_CANDIDATE:
+                into.setScore(Double.longBitsToDouble(in.getLong(data, b)));
+                break;
+            case NEW_DEPUTY2:
+                into.setSubject(in.getInt(data, b));
+                break;
+            case JOIN:
+            case PING:
+            case ACK:
+            case PING_REQ:
+                into.setSubject(in.getInt(data, b)).setProbe(in.getLong(data, b + 4));
+                int count = in.get(data, b + 12);
+                if (count < 0 || count > Message.MAX_UPDATES || end < b + 13 + count * UPDATE_SIZE) {
+                    return false;
+                }
+                for (int i = 0, u = b + 13; i < count; i++, u += UPDATE_SIZE) {
+                    MemberState state = MemberState.fromCode(in.get(data, u + 4));
+                    if (state == null) {
+                        return false;
+                    }
+                    into.addUpdate(in.getInt(data, u), state, in.getInt(data, u + 5));
+                }
+                break;
+            case DIGEST: {
+                into.setSubject(in.getInt(data, b));
+                int hashes = in.get(data, b + 4);
+                if (hashes < 0 || hashes > Message.MAX_HASHES || end < b + 5 + hashes * 8) {
+                    return false;
+                }
+                for (int i = 0; i < hashes; i++) {
+                    into.addHash(in.getLong(data, b + 5 + i * 8));
+                }
+                break;
+            }
+            case DELTA: {
+                MemberState state = MemberState.fromCode(in.get(data, b + 5));
+                if (state == null) {
+                    return false;
+                }
+                into.setSubject(in.getInt(data, b)).setRole(Role.fromCode(in.get(data, b + 4))).setState(state)
+                        .setSubjectTerm(in.getInt(data, b + 6)).setVersion(in.getLong(data, b + 10));
+                break;
+            }
+            default:
+                break;
+        }
+        return into.getRole() != null || !hasRole(type);
+    }
+
+    private static int headerSize(int version) {
+        // version 1 had no term
+        return version == 1 ? 16 : HEADER_SIZE;
+    }
+
+    // fixed payload of type as the current version encodes it
+    public static int payloadSize(MessageType type) {
+        return payloadSize(type, VERSION);
+    }
+
+    private static int payloadSize(MessageType type, int version) {
+        switch (type) {
+            case HEARTBEAT:
+                // unnumbered before version 3
+                return version >= 3 ? 16 : 0;
+            case DEAD:
+                return 5;
+            case ROLE_CHANGE:
+                return 1;
+            case ELECTION:
+            case DEPUTY2_CANDIDATE:
+                return 8;
+            case NEW_DEPUTY2:
+                return 4;
+            case JOIN:
+            case PING:
+            case ACK:
+            case PING_REQ:
+                // fixed part only, followed by count * UPDATE_SIZE bytes
+                return 13;
+            case DIGEST:
+                // followed by count * 8 bytes
+                return 5;
+            case DELTA:
+                return 18;
+            default:
+                return 0;
+        }
+    }
+
+    // absolute big-endian reads from a ByteBuffer or a byte[], one shared instance each, so the decoder is
+    // written once and neither source is wrapped per message
+    private abstract static class Bytes {
+        abstract byte get(Object data, int i);
+
+        abstract int getInt(Object data, int i);
+
+        abstract long getLong(Object data, int i);
+    }
+
+    private static final Bytes BUFFER = new Bytes() {
+        @Override
+        byte get(Object data, int i) {
+            return ((ByteBuffer) data).get(i);
+        }
+
+        @Override
+        int getInt(Object data, int i) {
+            return ((ByteBuffer) data).getInt(i);
+        }
+
+        @Override
+        long getLong(Object data, int i) {
+            return ((ByteBuffer) data).getLong(i);
+        }
+    };
+
+    private static final Bytes ARRAY = new Bytes() {
+        @Override
+        byte get(Object data, int i) {
+            return ((byte[]) data)[i];
+        }
+
+        @Override
+        int getInt(Object data, int i) {
+            return (int) INT.get((byte[]) data, i);
+        }
+
+        @Override
+        long getLong(Object data, int i) {
+            return (long) LONG.get((byte[]) data, i);
+        }
+    };
+
+    private static boolean hasRole(MessageType type) {
+        return type == MessageType.DEAD || type == MessageType.ROLE_CHANGE || type == MessageType.DELTA;
+    }
+}
\ No newline at end of file
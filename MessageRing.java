@@ -0,0 +1,76 @@
+package com.example;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// Bounded multi-producer / single-consumer ring of (topic, message) pairs.
+// Slots and their Message objects are allocated once; producers claim a sequence with CAS, copy the
+// message into the slot and publish it through the slot's volatile seq.
+class MessageRing {
+    private static final class Slot {
+        volatile long seq;
+        String topic;
+        final Message message = new Message();
+    }
+
+    private final Slot[] slots;
+    private final int mask;
+    private final AtomicLong tail = new AtomicLong();
+    private volatile long head;
+
+    MessageRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.slots = new Slot[size];
+        this.mask = size - 1;
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+            slots[i].seq = i;
+        }
+    }
+
+    boolean offer(String topic, Message message) {
+        long t;
+        Slot slot;
+        while (true) {
+            t = tail.get();
+            slot = slots[(int) (t & mask)];
+            long diff = slot.seq - t;
+            if (diff == 0) {
+                if (tail.compareAndSet(t, t + 1)) {
+                    break;
+                }
+            } else if (diff < 0) {
+                // slot still holds an entry the consumer has not taken yet
+                return false;
+            }
+        }
+
+        slot.topic = topic;
+        slot.message.copyFrom(message);
+        slot.seq = t + 1;
+        return true;
+    }
+
+    boolean isEmpty() {
+        return slots[(int) (head & mask)].seq != head + 1;
+    }
+
+    // single consumer only
+    int drain(Transport.Handler handler) {
+        int count = 0;
+        long h = head;
+        while (true) {
+            Slot slot = slots[(int) (h & mask)];
+            if (slot.seq != h + 1) {
+                break;
+            }
+            // the handler reads the slot in place, the slot is released once it returns
+            handler.onMessage(slot.topic, slot.message);
+            slot.topic = null;
+            slot.seq = h + slots.length;
+            h++;
+            head = h;
+            count++;
+        }
+        return count;
+    }
+}
\ No newline at end of file
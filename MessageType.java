@@ -0,0 +1,46 @@
+package com.example;
+
+// code() is the wire value (see MessageCodec), fixed per constant so reordering the enum cannot change
+// the format; a new type takes the next unused code.
+public enum MessageType {
+    HEARTBEAT(0),
+    DEAD(1),
+    ROLE_CHANGE(2),
+    ELECTION(3),
+    PROMOTE_DEPUTY2(4),
+    NEW_DEPUTY2(5),
+    ELECT_DEPUTY2_REQUEST(6),
+    DEPUTY2_CANDIDATE(7),
+    // gossip membership and probing
+    JOIN(8),
+    PING(9),
+    ACK(10),
+    PING_REQ(11),
+    // Boss lease renewal
+    LEASE(12),
+    // anti-entropy: bucket hashes of a view, then the entries of the buckets that differ
+    DIGEST(13),
+    DELTA(14);
+
+    private static final MessageType[] BY_CODE = new MessageType[15];
+
+    static {
+        for (MessageType t : values()) {
+            BY_CODE[t.code] = t;
+        }
+    }
+
+    private final byte code;
+
+    MessageType(int code) {
+        this.code = (byte) code;
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    public static MessageType fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,109 @@
+package com.example;
+
+import java.util.Arrays;
+
+// Consistent-hash ring over the alive PIDs for sharded monitoring. Each node watches only its k successors
+// on the ring and sends its own heartbeats point-to-point to its k predecessors (the nodes watching it),
+// so per-node heartbeat traffic stays at k messages per interval whatever the cluster size.
+// A death found by a monitor is broadcast on dead-topic and the ring is rebuilt without the dead PID.
+public class MonitorRing {
+    // announced once at startup, every member answers the newcomer directly so it learns the cluster
+    public static final String JOIN_TOPIC = "ring-join-topic";
+    private static final int[] NONE = new int[0];
+
+    private final int self;
+    private final int k;
+    private final MembershipTable membership;
+    // alive version the ring was last built from (guarded by this)
+    private long builtFrom = -1;
+    // replaced as a whole on every rebuild, so readers can compare by identity
+    private volatile int[] successors = NONE;
+    private volatile int[] predecessors = NONE;
+
+    public MonitorRing(int self, int k, MembershipTable membership) {
+        this.self = self;
+        this.k = k;
+        this.membership = membership;
+    }
+
+    // rebuilds the ring if the alive set changed since the last call, O(n log n) per membership change
+    public synchronized void refresh() {
+        long version = membership.getAliveVersion();
+        if (version == builtFrom) {
+            return;
+        }
+        builtFrom = version;
+
+        // ring position = hash in the high bits, PID breaks ties
+        long[] ring = new long[membership.aliveCount() + 1];
+        int n = 0;
+        boolean hasSelf = false;
+        for (int pid : membership.aliveList()) {
+            if (n == ring.length) {
+                ring = Arrays.copyOf(ring, n * 2);
+            }
+            ring[n++] = position(pid);
+            hasSelf |= pid == self;
+        }
+        if (!hasSelf) {
+            if (n == ring.length) {
+                ring = Arrays.copyOf(ring, n + 1);
+            }
+            ring[n++] = position(self);
+        }
+        Arrays.sort(ring, 0, n);
+
+        int at = Arrays.binarySearch(ring, 0, n, position(self));
+        int count = Math.min(k, n - 1);
+        int[] next = new int[count];
+        int[] prev = new int[count];
+        for (int i = 1; i <= count; i++) {
+            next[i - 1] = (int) ring[(at + i) % n];
+            prev[i - 1] = (int) ring[(at - i + n) % n];
+        }
+        if (!Arrays.equals(next, successors)) {
+            successors = next;
+        }
+        if (!Arrays.equals(prev, predecessors)) {
+            predecessors = prev;
+        }
+    }
+
+    // PIDs this node monitors; the same array until the set changes
+    public int[] getSuccessors() {
+        return successors;
+    }
+
+    // PIDs that monitor this node, i.e. where its heartbeats go
+    public int[] getPredecessors() {
+        return predecessors;
+    }
+
+    public boolean isMonitored(int pid) {
+        for (int p : successors) {
+            if (p == pid) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public int getK() {
+        return k;
+    }
+
+    private static long position(int pid) {
+        return ((long) hash(pid) << 32) | (pid & 0xffffffffL);
+    }
+
+    // murmur3 finalizer, spreads consecutive PIDs around the ring
+    private static int hash(int pid) {
+        int h = pid;
+        h ^= h >>> 16;
+        h *= 0x85ebca6b;
+        h ^= h >>> 13;
+        h *= 0xc2b2ae35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
\ No newline at end of file
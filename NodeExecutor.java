@@ -0,0 +1,175 @@
+package com.example;
+
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Runs node components as tasks on one shared scheduler (a thread pool, or a Simulation's virtual
+// time) instead of a platform thread per component. A component implements Step: step(now) does one round of work without blocking and
+// returns the time it wants to run next, so a pool sized to the cores can serve thousands of nodes.
+public class NodeExecutor {
+
+    // where tasks actually run: a thread pool on the system clock, or a Simulation on virtual time
+    public interface Scheduler {
+        // runs task once at the given clock time, unless the returned handle is cancelled first
+        Scheduled schedule(Runnable task, long at);
+
+        void shutdown();
+    }
+
+    public interface Scheduled {
+        void cancel();
+    }
+
+    public interface Step {
+        // returns the next time to run, Long.MAX_VALUE to wait for Task.wake()
+        long step(long now) throws Exception;
+
+        // called once after the task is cancelled or step() threw, never concurrently with step()
+        void stopped();
+    }
+
+    public final class Task {
+        private final String name;
+        private final Step step;
+        // all guarded by this
+        private boolean cancelled;
+        private boolean running;
+        private long scheduledAt = Long.MAX_VALUE;
+        private long pendingWake = Long.MAX_VALUE;
+        private int generation;
+        private Scheduled future;
+
+        private Task(String name, Step step) {
+            this.name = name;
+            this.step = step;
+        }
+
+        // run no later than at (e.g. an earlier deadline was armed)
+        public synchronized void wake(long at) {
+            if (cancelled) {
+                return;
+            }
+            if (running) {
+                pendingWake = Math.min(pendingWake, at);
+            } else if (at < scheduledAt) {
+                arm(at);
+            }
+        }
+
+        // same contract as Thread-based shutdown(): no step starts after this, stopped() runs once
+        public void cancel() {
+            synchronized (this) {
+                if (cancelled) {
+                    return;
+                }
+                cancelled = true;
+                if (future != null) {
+                    future.cancel();
+                }
+                if (running) {
+                    // the running step calls stopped() when it returns
+                    return;
+                }
+            }
+            step.stopped();
+        }
+
+        public synchronized boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void arm(long at) {
+            if (future != null) {
+                future.cancel();
+            }
+            int g = ++generation;
+            scheduledAt = at;
+            future = scheduler.schedule(() -> run(g), at);
+        }
+
+        private void run(int g) {
+            synchronized (this) {
+                // a superseded run that started before its future was cancelled
+                if (cancelled || g != generation) {
+                    return;
+                }
+                running = true;
+                scheduledAt = Long.MAX_VALUE;
+                future = null;
+            }
+            long next;
+            try {
+                next = step.step(clock.millis());
+            } catch (Exception e) {
+                System.err.println(name + " encountered error: " + e.getMessage());
+                synchronized (this) {
+                    cancelled = true;
+                    running = false;
+                }
+                step.stopped();
+                return;
+            }
+            synchronized (this) {
+                running = false;
+                if (!cancelled) {
+                    next = Math.min(next, pendingWake);
+                    pendingWake = Long.MAX_VALUE;
+                    if (next != Long.MAX_VALUE) {
+                        arm(next);
+                    }
+                    return;
+                }
+            }
+            step.stopped();
+        }
+    }
+
+    private final Scheduler scheduler;
+    private final Clock clock;
+
+    public NodeExecutor() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    public NodeExecutor(int threads) {
+        this(pool(threads), Clock.SYSTEM);
+    }
+
+    public NodeExecutor(Scheduler scheduler, Clock clock) {
+        this.scheduler = scheduler;
+        this.clock = clock;
+    }
+
+    private static Scheduler pool(int threads) {
+        AtomicInteger count = new AtomicInteger();
+        ScheduledExecutorService pool = Executors.newScheduledThreadPool(threads, r -> {
+            Thread t = new Thread(r, "node-executor-" + count.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        return new Scheduler() {
+            @Override
+            public Scheduled schedule(Runnable task, long at) {
+                long delay = Math.max(0, at - System.currentTimeMillis());
+                ScheduledFuture<?> f = pool.schedule(task, delay, TimeUnit.MILLISECONDS);
+                return () -> f.cancel(false);
+            }
+
+            @Override
+            public void shutdown() {
+                pool.shutdownNow();
+            }
+        };
+    }
+
+    // schedules the first step right away
+    public Task submit(String name, Step step) {
+        Task task = new Task(name, step);
+        task.wake(clock.millis());
+        return task;
+    }
+
+    public void shutdown() {
+        scheduler.shutdown();
+    }
+}
\ No newline at end of file
@@ -0,0 +1,473 @@
+package com.example;
+
+import java.lang.management.ManagementFactory;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+// Per-node counters and latency histograms. Every record*() call is lock-free and allocation-free
+// (a handler histogram is created once per topic), so components call them on their hot paths;
+// readers pull values through the getters, snapshot() or JMX.
+public class NodeMetrics implements NodeMetricsMXBean {
+    private final int pid;
+    private final AtomicLong heartbeatsReceived = new AtomicLong();
+    private final AtomicLong heartbeatsSent = new AtomicLong();
+    private final AtomicLong suspicions = new AtomicLong();
+    private final AtomicLong falseSuspicions = new AtomicLong();
+    private final AtomicLong deathsDeclared = new AtomicLong();
+    private final AtomicLong electionsCompleted = new AtomicLong();
+    private final AtomicLong controlOverflows = new AtomicLong();
+    private final AtomicLong staleMessages = new AtomicLong();
+    private final Histogram heartbeatInterArrival = new Histogram();
+    private final Histogram detectionLatency = new Histogram();
+    private final Histogram electionDuration = new Histogram();
+    private final Histogram heartbeatPathLatency = new Histogram();
+    private final Histogram controlStageLatency = new Histogram();
+    private final Map<String, Histogram> handlerLatency = new ConcurrentHashMap<>();
+    private final LaneStats heartbeatLane = new LaneStats();
+    private final LaneStats controlLane = new LaneStats();
+    // 0 = no election in progress
+    private final AtomicLong electionStartedAt = new AtomicLong();
+    private volatile PhiAccrualDetector peers;
+    private volatile LinkStats links;
+    private volatile ObjectName registeredAs;
+
+    public NodeMetrics(int pid) {
+        this.pid = pid;
+    }
+
+    // intervalMillis < 0 for the first heartbeat from a PID
+    public void recordHeartbeat(long intervalMillis) {
+        heartbeatsReceived.incrementAndGet();
+        if (intervalMillis >= 0) {
+            heartbeatInterArrival.recordMillis(intervalMillis);
+        }
+    }
+
+    public void recordHeartbeatSent() {
+        heartbeatsSent.incrementAndGet();
+    }
+
+    // ProcessNode.send tracks every message on its lane
+    public LaneStats lane(Transport.Lane lane) {
+        return lane == Transport.Lane.HEARTBEAT ? heartbeatLane : controlLane;
+    }
+
+    public void recordSuspicion() {
+        suspicions.incrementAndGet();
+    }
+
+    public void recordFalseSuspicion() {
+        falseSuspicions.incrementAndGet();
+    }
+
+    // sinceLastHeartbeatMillis < 0 when nothing was ever heard from the PID
+    public void recordDeath(long sinceLastHeartbeatMillis) {
+        deathsDeclared.incrementAndGet();
+        if (sinceLastHeartbeatMillis >= 0) {
+            detectionLatency.recordMillis(sinceLastHeartbeatMillis);
+        }
+    }
+
+    // a new round opened, an abandoned earlier one is not counted
+    public void electionStarted(long now) {
+        electionStartedAt.set(now);
+    }
+
+    public void electionCompleted(long now) {
+        long started = electionStartedAt.getAndSet(0);
+        electionsCompleted.incrementAndGet();
+        if (started != 0) {
+            electionDuration.recordMillis(now - started);
+        }
+    }
+
+    public void recordHeartbeatPath(long nanos) {
+        heartbeatPathLatency.recordNanos(nanos);
+    }
+
+    public void recordControlStage(long nanos) {
+        controlStageLatency.recordNanos(nanos);
+    }
+
+    public void recordControlOverflow() {
+        controlOverflows.incrementAndGet();
+    }
+
+    public void recordStaleMessage() {
+        staleMessages.incrementAndGet();
+    }
+
+    public void recordHandler(String topic, long nanos) {
+        Histogram h = handlerLatency.get(topic);
+        if (h == null) {
+            h = handlerLatency.computeIfAbsent(topic, t -> new Histogram());
+        }
+        h.recordNanos(nanos);
+    }
+
+    // source of the per-peer inter-arrival statistics (the Listener's phi detector)
+    public void setPeers(PhiAccrualDetector peers) {
+        this.peers = peers;
+    }
+
+    // source of the per-peer loss / delay estimates (the Listener's LinkStats)
+    public void setLinks(LinkStats links) {
+        this.links = links;
+    }
+
+    public void register() {
+        try {
+            ObjectName name = new ObjectName("com.example:type=NodeMetrics,pid=" + pid);
+            ManagementFactory.getPlatformMBeanServer().registerMBean(this, name);
+            registeredAs = name;
+        } catch (JMException e) {
+            System.err.println("Process " + pid + " failed to register metrics: " + e.getMessage());
+        }
+    }
+
+    public void unregister() {
+        ObjectName name = registeredAs;
+        if (name == null) {
+            return;
+        }
+        registeredAs = null;
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            server.unregisterMBean(name);
+        } catch (JMException e) {
+            // already gone
+        }
+    }
+
+    // frozen copy of every attribute, allocates
+    public NodeMetricsMXBean snapshot() {
+        return new Snapshot(this);
+    }
+
+    @Override
+    public int getPid() {
+        return pid;
+    }
+
+    @Override
+    public long getHeartbeatsReceived() {
+        return heartbeatsReceived.get();
+    }
+
+    @Override
+    public long getHeartbeatsSent() {
+        return heartbeatsSent.get();
+    }
+
+    @Override
+    public long getHeartbeatSendFailures() {
+        return heartbeatLane.snapshot().getFailed();
+    }
+
+    @Override
+    public long getSuspicions() {
+        return suspicions.get();
+    }
+
+    @Override
+    public long getFalseSuspicions() {
+        return falseSuspicions.get();
+    }
+
+    @Override
+    public long getDeathsDeclared() {
+        return deathsDeclared.get();
+    }
+
+    @Override
+    public long getElectionsCompleted() {
+        return electionsCompleted.get();
+    }
+
+    @Override
+    public long getControlOverflows() {
+        return controlOverflows.get();
+    }
+
+    @Override
+    public long getStaleMessages() {
+        return staleMessages.get();
+    }
+
+    @Override
+    public Histogram.Snapshot getHeartbeatInterArrival() {
+        return heartbeatInterArrival.snapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getDetectionLatency() {
+        return detectionLatency.snapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getElectionDuration() {
+        return electionDuration.snapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getHeartbeatSendLatency() {
+        return heartbeatLane.snapshot().getLatency();
+    }
+
+    @Override
+    public LaneStats.Snapshot getHeartbeatLane() {
+        return heartbeatLane.snapshot();
+    }
+
+    @Override
+    public LaneStats.Snapshot getControlLane() {
+        return controlLane.snapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getHeartbeatPathLatency() {
+        return heartbeatPathLatency.snapshot();
+    }
+
+    @Override
+    public Histogram.Snapshot getControlStageLatency() {
+        return controlStageLatency.snapshot();
+    }
+
+    @Override
+    public Map<String, Histogram.Snapshot> getHandlerLatency() {
+        Map<String, Histogram.Snapshot> map = new TreeMap<>();
+        handlerLatency.forEach((topic, h) -> map.put(topic, h.snapshot()));
+        return map;
+    }
+
+    @Override
+    public Map<Integer, PeerInterval> getPeerInterArrival() {
+        Map<Integer, PeerInterval> map = new TreeMap<>();
+        PhiAccrualDetector p = peers;
+        if (p != null) {
+            p.forEachPeer((peer, mean, std, samples) -> map.put(peer, new PeerInterval(mean, std, samples)));
+        }
+        return map;
+    }
+
+    @Override
+    public Map<Integer, LinkStats.Link> getPeerLinks() {
+        Map<Integer, LinkStats.Link> map = new TreeMap<>();
+        LinkStats l = links;
+        if (l != null) {
+            l.forEachPeer(map::put);
+        }
+        return map;
+    }
+
+    @Override
+    public String toString() {
+        return summary(this);
+    }
+
+    static String summary(NodeMetricsMXBean m) {
+        return "PID " + m.getPid() + " metrics - heartbeats in/out: " + m.getHeartbeatsReceived() + "/"
+                + m.getHeartbeatsSent() + ", suspicions: " + m.getSuspicions() + " (false "
+                + m.getFalseSuspicions() + "), deaths: " + m.getDeathsDeclared() + ", elections: "
+                + m.getElectionsCompleted() + ", stale dropped: " + m.getStaleMessages()
+                + "\n  inter-arrival: " + m.getHeartbeatInterArrival()
+                + "\n  detection: " + m.getDetectionLatency()
+                + "\n  election: " + m.getElectionDuration()
+                + "\n  heartbeat path: " + m.getHeartbeatPathLatency()
+                + "\n  control stage: " + m.getControlStageLatency()
+                + "\n  heartbeat lane: " + m.getHeartbeatLane()
+                + "\n  control lane: " + m.getControlLane();
+    }
+
+    public static final class PeerInterval {
+        private final double meanMillis;
+        private final double stdDeviationMillis;
+        private final int samples;
+
+        public PeerInterval(double meanMillis, double stdDeviationMillis, int samples) {
+            this.meanMillis = meanMillis;
+            this.stdDeviationMillis = stdDeviationMillis;
+            this.samples = samples;
+        }
+
+        public double getMeanMillis() {
+            return meanMillis;
+        }
+
+        public double getStdDeviationMillis() {
+            return stdDeviationMillis;
+        }
+
+        public int getSamples() {
+            return samples;
+        }
+
+        @Override
+        public String toString() {
+            return String.format("mean=%.1fms std=%.1fms n=%d", meanMillis, stdDeviationMillis, samples);
+        }
+    }
+
+    private static final class Snapshot implements NodeMetricsMXBean {
+        private final int pid;
+        private final long heartbeatsReceived;
+        private final long heartbeatsSent;
+        private final long heartbeatSendFailures;
+        private final long suspicions;
+        private final long falseSuspicions;
+        private final long deathsDeclared;
+        private final long electionsCompleted;
+        private final long controlOverflows;
+        private final long staleMessages;
+        private final Histogram.Snapshot heartbeatInterArrival;
+        private final Histogram.Snapshot detectionLatency;
+        private final Histogram.Snapshot electionDuration;
+        private final Histogram.Snapshot heartbeatSendLatency;
+        private final LaneStats.Snapshot heartbeatLane;
+        private final LaneStats.Snapshot controlLane;
+        private final Histogram.Snapshot heartbeatPathLatency;
+        private final Histogram.Snapshot controlStageLatency;
+        private final Map<String, Histogram.Snapshot> handlerLatency;
+        private final Map<Integer, PeerInterval> peerInterArrival;
+        private final Map<Integer, LinkStats.Link> peerLinks;
+
+        Snapshot(NodeMetrics m) {
+            this.pid = m.getPid();
+            this.heartbeatsReceived = m.getHeartbeatsReceived();
+            this.heartbeatsSent = m.getHeartbeatsSent();
+            this.heartbeatSendFailures = m.getHeartbeatSendFailures();
+            this.suspicions = m.getSuspicions();
+            this.falseSuspicions = m.getFalseSuspicions();
+            this.deathsDeclared = m.getDeathsDeclared();
+            this.electionsCompleted = m.getElectionsCompleted();
+            this.controlOverflows = m.getControlOverflows();
+            this.staleMessages = m.getStaleMessages();
+            this.heartbeatInterArrival = m.getHeartbeatInterArrival();
+            this.detectionLatency = m.getDetectionLatency();
+            this.electionDuration = m.getElectionDuration();
+            this.heartbeatSendLatency = m.getHeartbeatSendLatency();
+            this.heartbeatLane = m.getHeartbeatLane();
+            this.controlLane = m.getControlLane();
+            this.heartbeatPathLatency = m.getHeartbeatPathLatency();
+            this.controlStageLatency = m.getControlStageLatency();
+            this.handlerLatency = Collections.unmodifiableMap(m.getHandlerLatency());
+            this.peerInterArrival = Collections.unmodifiableMap(m.getPeerInterArrival());
+            this.peerLinks = Collections.unmodifiableMap(m.getPeerLinks());
+        }
+
+        @Override
+        public int getPid() {
+            return pid;
+        }
+
+        @Override
+        public long getHeartbeatsReceived() {
+            return heartbeatsReceived;
+        }
+
+        @Override
+        public long getHeartbeatsSent() {
+            return heartbeatsSent;
+        }
+
+        @Override
+        public long getHeartbeatSendFailures() {
+            return heartbeatSendFailures;
+        }
+
+        @Override
+        public long getSuspicions() {
+            return suspicions;
+        }
+
+        @Override
+        public long getFalseSuspicions() {
+            return falseSuspicions;
+        }
+
+        @Override
+        public long getDeathsDeclared() {
+            return deathsDeclared;
+        }
+
+        @Override
+        public long getElectionsCompleted() {
+            return electionsCompleted;
+        }
+
+        @Override
+        public long getControlOverflows() {
+            return controlOverflows;
+        }
+
+        @Override
+        public long getStaleMessages() {
+            return staleMessages;
+        }
+
+        @Override
+        public Histogram.Snapshot getHeartbeatInterArrival() {
+            return heartbeatInterArrival;
+        }
+
+        @Override
+        public Histogram.Snapshot getDetectionLatency() {
+            return detectionLatency;
+        }
+
+        @Override
+        public Histogram.Snapshot getElectionDuration() {
+            return electionDuration;
+        }
+
+        @Override
+        public Histogram.Snapshot getHeartbeatSendLatency() {
+            return heartbeatSendLatency;
+        }
+
+        @Override
+        public LaneStats.Snapshot getHeartbeatLane() {
+            return heartbeatLane;
+        }
+
+        @Override
+        public LaneStats.Snapshot getControlLane() {
+            return controlLane;
+        }
+
+        @Override
+        public Histogram.Snapshot getHeartbeatPathLatency() {
+            return heartbeatPathLatency;
+        }
+
+        @Override
+        public Histogram.Snapshot getControlStageLatency() {
+            return controlStageLatency;
+        }
+
+        @Override
+        public Map<String, Histogram.Snapshot> getHandlerLatency() {
+            return handlerLatency;
+        }
+
+        @Override
+        public Map<Integer, PeerInterval> getPeerInterArrival() {
+            return peerInterArrival;
+        }
+
+        @Override
+        public Map<Integer, LinkStats.Link> getPeerLinks() {
+            return peerLinks;
+        }
+
+        @Override
+        public String toString() {
+            return summary(this);
+        }
+    }
+}
\ No newline at end of file
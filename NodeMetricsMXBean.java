@@ -0,0 +1,61 @@
+package com.example;
+
+import java.util.Map;
+
+// Attributes of one node's metrics, registered over JMX as com.example:type=NodeMetrics,pid=<pid>.
+// Implemented by the live NodeMetrics and by the frozen copy NodeMetrics.snapshot() returns.
+public interface NodeMetricsMXBean {
+    int getPid();
+
+    // any message counts as a heartbeat, see Listener.dispatch
+    long getHeartbeatsReceived();
+
+    long getHeartbeatsSent();
+
+    long getHeartbeatSendFailures();
+
+    long getSuspicions();
+
+    // suspicions refuted by a probe ACK or a higher incarnation
+    long getFalseSuspicions();
+
+    long getDeathsDeclared();
+
+    long getElectionsCompleted();
+
+    // times the polling thread found the control stage full and waited for it to drain
+    long getControlOverflows();
+
+    // control messages dropped because they carried an older election term
+    long getStaleMessages();
+
+    Histogram.Snapshot getHeartbeatInterArrival();
+
+    // last heartbeat from a PID to this node declaring it dead
+    Histogram.Snapshot getDetectionLatency();
+
+    // first ELECTION score sent or seen to the election result
+    Histogram.Snapshot getElectionDuration();
+
+    // send to transport callback on the heartbeat lane
+    Histogram.Snapshot getHeartbeatSendLatency();
+
+    // per send lane: in-flight depth, latency and failures (see Transport.Lane)
+    LaneStats.Snapshot getHeartbeatLane();
+
+    LaneStats.Snapshot getControlLane();
+
+    // poll-to-handle on the Listener fast path / through the control stage
+    Histogram.Snapshot getHeartbeatPathLatency();
+
+    Histogram.Snapshot getControlStageLatency();
+
+    // handler time per topic
+    Map<String, Histogram.Snapshot> getHandlerLatency();
+
+    // phi window statistics per monitored PID
+    Map<Integer, NodeMetrics.PeerInterval> getPeerInterArrival();
+
+    // heartbeat loss, reordering and one-way delay per sender (see LinkStats)
+    Map<Integer, LinkStats.Link> getPeerLinks();
+}
\ No newline at end of file
@@ -0,0 +1,181 @@
+package com.example;
+
+import java.util.Iterator;
+
+// Phi-accrual failure detector (Hayashibara et al.).
+// Keeps a sliding window of heartbeat inter-arrival times per PID and turns the time since the
+// last heartbeat into a suspicion level phi. A node is suspected once phi exceeds the threshold:
+// a lower threshold detects faster, a higher one makes fewer mistakes on jittery networks.
+public class PhiAccrualDetector {
+    private volatile double threshold;
+    // standardized distance y at which phi reaches the threshold, cached per threshold
+    private volatile double thresholdY;
+    private final int windowSize;
+    private final double minStdDeviation;
+    private final long acceptablePause;
+    private final long firstHeartbeatEstimate;
+    private final IntMap<History> histories = new IntMap<>();
+
+    public PhiAccrualDetector() {
+        this(8.0, 100, 200, 3000, 1000);
+    }
+
+    public PhiAccrualDetector(double threshold, int windowSize, long minStdDeviationMillis,
+            long acceptablePauseMillis, long firstHeartbeatEstimateMillis) {
+        setThreshold(threshold);
+        this.windowSize = windowSize;
+        this.minStdDeviation = minStdDeviationMillis;
+        this.acceptablePause = acceptablePauseMillis;
+        this.firstHeartbeatEstimate = firstHeartbeatEstimateMillis;
+    }
+
+    // returns the inter-arrival time just recorded, -1 for the first heartbeat from pid
+    public long heartbeat(int pid, long now) {
+        History h = histories.get(pid);
+        if (h == null) {
+            h = histories.computeIfAbsent(pid, p -> new History(p, windowSize, firstHeartbeatEstimate));
+        }
+        return h.record(now);
+    }
+
+    // suspicion level for pid, 0 when nothing is known about it yet
+    public double phi(int pid, long now) {
+        History h = histories.get(pid);
+        if (h == null) {
+            return 0.0;
+        }
+        return h.phi(now, minStdDeviation, acceptablePause);
+    }
+
+    public boolean isSuspected(int pid, long now) {
+        return phi(pid, now) > threshold;
+    }
+
+    public void remove(int pid) {
+        histories.remove(pid);
+    }
+
+    public interface PeerVisitor {
+        void visit(int pid, double meanMillis, double stdDeviationMillis, int samples);
+    }
+
+    // window statistics per PID (raw, before minStdDeviation / acceptablePause), for metrics
+    public void forEachPeer(PeerVisitor visitor) {
+        Iterator<History> it = histories.values();
+        while (it.hasNext()) {
+            it.next().visit(visitor);
+        }
+    }
+
+    public double getThreshold() {
+        return threshold;
+    }
+
+    public void setThreshold(double threshold) {
+        this.threshold = threshold;
+        this.thresholdY = solveY(threshold);
+    }
+
+    // absolute time at which phi for pid will cross the threshold if no further heartbeat arrives,
+    // -1 when nothing is known about pid
+    public long suspicionDeadline(int pid) {
+        History h = histories.get(pid);
+        if (h == null) {
+            return -1;
+        }
+        return h.deadline(thresholdY, minStdDeviation, acceptablePause);
+    }
+
+    // inverts phi = -log10(e / (1 + e)), e = exp(-y * (1.5976 + 0.070566 * y^2)) with Newton's method
+    private static double solveY(double phi) {
+        double p = Math.pow(10, -phi);
+        double target = Math.log(p / (1.0 - p));
+        double y = 0;
+        for (int i = 0; i < 50; i++) {
+            double f = -y * (1.5976 + 0.070566 * y * y) - target;
+            double df = -(1.5976 + 3 * 0.070566 * y * y);
+            double step = f / df;
+            y -= step;
+            if (Math.abs(step) < 1e-9) {
+                break;
+            }
+        }
+        return y;
+    }
+
+    private static final class History {
+        private final int pid;
+        private final long[] intervals;
+        private int next = 0;
+        private int count = 0;
+        private double sum = 0;
+        private double sumSquares = 0;
+        private long last = -1;
+
+        History(int pid, int windowSize, long firstEstimate) {
+            this.pid = pid;
+            this.intervals = new long[windowSize];
+            // seed with the expected interval so the first few heartbeats do not look infinitely late
+            add(firstEstimate - firstEstimate / 4);
+            add(firstEstimate + firstEstimate / 4);
+        }
+
+        synchronized long record(long now) {
+            long interval = last >= 0 ? now - last : -1;
+            if (interval >= 0) {
+                add(interval);
+            }
+            last = now;
+            return interval;
+        }
+
+        synchronized void visit(PeerVisitor visitor) {
+            double mean = sum / count;
+            visitor.visit(pid, mean, stdDeviation(mean, 0), count);
+        }
+
+        private void add(long interval) {
+            if (count == intervals.length) {
+                long old = intervals[next];
+                sum -= old;
+                sumSquares -= (double) old * old;
+            } else {
+                count++;
+            }
+            intervals[next] = interval;
+            sum += interval;
+            sumSquares += (double) interval * interval;
+            next = (next + 1) % intervals.length;
+        }
+
+        private double stdDeviation(double mean, double minStdDeviation) {
+            double variance = sumSquares / count - mean * mean;
+            return Math.max(Math.sqrt(Math.max(variance, 0.0)), minStdDeviation);
+        }
+
+        synchronized long deadline(double thresholdY, double minStdDeviation, long acceptablePause) {
+            if (last < 0) {
+                return -1;
+            }
+            double mean = sum / count;
+            return last + (long) Math.ceil(mean + acceptablePause + thresholdY * stdDeviation(mean, minStdDeviation));
+        }
+
+        synchronized double phi(long now, double minStdDeviation, long acceptablePause) {
+            if (last < 0) {
+                return 0.0;
+            }
+            double mean = sum / count;
+            double stdDeviation = stdDeviation(mean, minStdDeviation);
+            double elapsed = now - last;
+
+            // logistic approximation of the normal CDF, as used by Akka/Cassandra
+            double y = (elapsed - (mean + acceptablePause)) / stdDeviation;
+            double e = Math.exp(-y * (1.5976 + 0.070566 * y * y));
+            if (elapsed > mean + acceptablePause) {
+                return -Math.log10(e / (1.0 + e));
+            }
+            return -Math.log10(1.0 - 1.0 / (1.0 + e));
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,218 @@
+package com.example;
+
+import java.util.*;
+import java.util.function.Consumer;
+
+// Confirms a suspected failure before anyone acts on it.
+// probe(pid) pings the target directly on its inbox topic; if no ACK arrives within directTimeout,
+// k other alive members are asked to ping it on our behalf (PING_REQ) and relay the ACK. Only when
+// neither path answers within indirectTimeout is the target reported as failed, so a slow consumer or
+// a pause on one observer no longer turns into a failover.
+public class Prober {
+
+    public interface Callback {
+        void onResult(int pid, boolean alive);
+    }
+
+    private static final class Probe {
+        final int id;
+        final int target;
+        final long startedAt;
+        boolean indirect;
+
+        Probe(int id, int target, long startedAt) {
+            this.id = id;
+            this.target = target;
+            this.startedAt = startedAt;
+        }
+    }
+
+    // a PING we send because someone else asked us to
+    private static final class Relay {
+        final int id;
+        final int requester;
+        final int target;
+        final long requesterProbe;
+        final long startedAt;
+
+        Relay(int id, int requester, int target, long requesterProbe, long startedAt) {
+            this.id = id;
+            this.requester = requester;
+            this.target = target;
+            this.requesterProbe = requesterProbe;
+            this.startedAt = startedAt;
+        }
+    }
+
+    private final ProcessNode node;
+    private final long directTimeout;
+    private final long indirectTimeout;
+    private final int indirectProbes;
+    private final Random random;
+    private final Message out = new Message();
+
+    private final IntMap<Probe> byTarget = new IntMap<>();
+    private final IntMap<Probe> byId = new IntMap<>();
+    private final IntMap<Relay> relays = new IntMap<>();
+    private final List<Probe> active = new ArrayList<>();
+    private final List<Relay> activeRelays = new ArrayList<>();
+    private int nextId = 0;
+
+    private Callback callback = (pid, alive) -> { };
+    private Consumer<Message> piggyback = msg -> { };
+
+    // probes are answered on the Listener's polling thread, a relayed probe takes two round trips
+    public Prober(ProcessNode node) {
+        this(node, 500, 1000, 3, node.getRandom());
+    }
+
+    public Prober(ProcessNode node, long directTimeout, long indirectTimeout, int indirectProbes, Random random) {
+        this.node = node;
+        this.directTimeout = directTimeout;
+        this.indirectTimeout = indirectTimeout;
+        this.indirectProbes = indirectProbes;
+        this.random = random;
+    }
+
+    public void setCallback(Callback callback) {
+        this.callback = callback;
+    }
+
+    // lets gossip membership attach updates to every PING / PING_REQ / ACK this prober sends
+    public void setPiggyback(Consumer<Message> piggyback) {
+        this.piggyback = piggyback;
+    }
+
+    public synchronized boolean isProbing(int pid) {
+        return byTarget.containsKey(pid);
+    }
+
+    // starts a direct probe of pid unless one is already running
+    public synchronized void probe(int pid, long now) {
+        if (byTarget.containsKey(pid)) {
+            return;
+        }
+        Probe p = new Probe(++nextId, pid, now);
+        byTarget.put(pid, p);
+        byId.put(p.id, p);
+        active.add(p);
+        send(ProcessNode.inboxTopic(pid), MessageType.PING, pid, p.id);
+    }
+
+    // advances timeouts, returns the next time it needs to be called
+    public long tick(long now) {
+        List<Probe> failed = null;
+        long next = Long.MAX_VALUE;
+        synchronized (this) {
+            for (Iterator<Probe> it = active.iterator(); it.hasNext();) {
+                Probe p = it.next();
+                if (!p.indirect) {
+                    if (now - p.startedAt >= directTimeout) {
+                        p.indirect = true;
+                        requestIndirect(p);
+                    }
+                } else if (now - p.startedAt >= directTimeout + indirectTimeout) {
+                    it.remove();
+                    byTarget.remove(p.target);
+                    byId.remove(p.id);
+                    if (failed == null) {
+                        failed = new ArrayList<>();
+                    }
+                    failed.add(p);
+                    continue;
+                }
+                next = Math.min(next, p.startedAt + directTimeout + (p.indirect ? indirectTimeout : 0));
+            }
+            for (Iterator<Relay> it = activeRelays.iterator(); it.hasNext();) {
+                Relay r = it.next();
+                if (now - r.startedAt >= directTimeout) {
+                    it.remove();
+                    relays.remove(r.id);
+                }
+            }
+        }
+        // report outside the lock, the callback may promote or broadcast
+        if (failed != null) {
+            for (Probe p : failed) {
+                callback.onResult(p.target, false);
+            }
+        }
+        return next;
+    }
+
+    public void handle(Message msg, long now) {
+        Probe succeeded = null;
+        synchronized (this) {
+            switch (msg.getType()) {
+                case PING:
+                    // an ACK names the member it vouches for, so a relayed one looks the same
+                    send(ProcessNode.inboxTopic(msg.getPid()), MessageType.ACK, node.getPid(), msg.getProbe());
+                    break;
+                case PING_REQ: {
+                    Relay r = new Relay(++nextId, msg.getPid(), msg.getSubject(), msg.getProbe(), now);
+                    relays.put(r.id, r);
+                    activeRelays.add(r);
+                    send(ProcessNode.inboxTopic(r.target), MessageType.PING, r.target, r.id);
+                    break;
+                }
+                case ACK: {
+                    int id = (int) msg.getProbe();
+                    Relay r = relays.get(id);
+                    if (r != null && msg.getSubject() == r.target) {
+                        relays.remove(id);
+                        activeRelays.remove(r);
+                        send(ProcessNode.inboxTopic(r.requester), MessageType.ACK, r.target, r.requesterProbe);
+                        break;
+                    }
+                    Probe p = byId.get(id);
+                    if (p != null && msg.getSubject() == p.target) {
+                        byId.remove(id);
+                        byTarget.remove(p.target);
+                        active.remove(p);
+                        succeeded = p;
+                    }
+                    break;
+                }
+                default:
+                    break;
+            }
+        }
+        if (succeeded != null) {
+            callback.onResult(succeeded.target, true);
+        }
+    }
+
+    private void requestIndirect(Probe p) {
+        int[] helpers = pickHelpers(p.target);
+        for (int helper : helpers) {
+            send(ProcessNode.inboxTopic(helper), MessageType.PING_REQ, p.target, p.id);
+        }
+    }
+
+    // up to k random alive members other than this node and the target (reservoir sampling)
+    private int[] pickHelpers(int target) {
+        int[] picked = new int[indirectProbes];
+        int seen = 0;
+        for (int pid : node.getMembership().aliveList()) {
+            if (pid == target || pid == node.getPid() || node.getMembership().isSuspect(pid)) {
+                continue;
+            }
+            if (seen < picked.length) {
+                picked[seen] = pid;
+            } else {
+                int j = random.nextInt(seen + 1);
+                if (j < picked.length) {
+                    picked[j] = pid;
+                }
+            }
+            seen++;
+        }
+        return seen < picked.length ? Arrays.copyOf(picked, seen) : picked;
+    }
+
+    private void send(String topic, MessageType type, int subject, long probe) {
+        out.reset(type, node.getPid()).setSubject(subject).setProbe(probe);
+        piggyback.accept(out);
+        node.send(topic, out);
+    }
+}
\ No newline at end of file
@@ -1,33 +1,330 @@
 package com.example;
 
-import org.apache.kafka.clients.producer.*;
+import java.io.IOException;
+import java.nio.file.Path;
 import java.util.*;
 import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicLong;
 
 public class ProcessNode {
+    private static final String INBOX_PREFIX = "node-";
+
     private int pid;
     private String role = null;
-    CopyOnWriteArrayList<Integer> aliveList = new CopyOnWriteArrayList<>();
-    CopyOnWriteArrayList<String> bossList = new CopyOnWriteArrayList<>();
-    private List<Integer> deathList = new CopyOnWriteArrayList<>();
+    private final MembershipTable membership = new MembershipTable();
+    private final LeadershipTable leadership = new LeadershipTable();
     private Map<Integer, Double> electionScores = new ConcurrentHashMap<>();
     private Map<Integer, String> roleMap = new ConcurrentHashMap<>();
     private long startTime;
 
-    // Kafka producer shared
-    private final KafkaProducer<String, String> producer;
+    // transport shared by all components of this node
+    private final Transport transport;
+    private final AtomicLong sequence = new AtomicLong();
+    // any outbound message doubles as a heartbeat, HeartbeatSender only fills the gaps
+    private volatile long lastSendTime = 0;
+    // last time membership or leadership changed, used to adapt the heartbeat interval
+    private volatile long lastInstability;
+    private final NodeMetrics metrics;
+    // election term, stamped on every outbound message; only written under this
+    private volatile int term = 0;
+    // end of the open election round for term, 0 when no round is open (guarded by this)
+    private long electionDeadline = 0;
+    private volatile long electionTimeout = 2000;
+    // how long a Boss lease lasts without renewal, the Boss renews it three times per period
+    private volatile long leaseDuration = 5000;
+    // null unless persistence is enabled
+    private volatile StateLog stateLog;
+    // null unless heartbeats are sharded over a monitoring ring
+    private volatile MonitorRing monitorRing;
+    // shared by all components of this node; a Simulation passes virtual time and a seeded Random
+    private final Clock clock;
+    private final Random random;
+    // deaths, role changes, elections... go here instead of straight to System.out
+    private volatile EventLog events = EventLog.console();
+    // bumped by every change a ClusterView shows; publishView() rebuilds only when it moved
+    private final AtomicLong viewChanges = new AtomicLong();
+    private volatile long viewPublished = -1;
+    private final Object viewLock = new Object();
+    private volatile ClusterView view;
+    // pushed to subscribers as the changes are applied (see MembershipEvents)
+    private final MembershipEvents membershipEvents = new MembershipEvents();
+    // versions of the deaths and roles this node knows of, reconciled with peers (see AntiEntropy)
+    private final AntiEntropy antiEntropy = new AntiEntropy(this);
 
     public ProcessNode(int pid, Properties kafkaProps) {
+        this(pid, new KafkaTransport(kafkaProps, "listener-" + pid));
+    }
+
+    public ProcessNode(int pid, Transport transport) {
+        this(pid, transport, Clock.SYSTEM, new Random());
+    }
+
+    public ProcessNode(int pid, Transport transport, Clock clock, Random random) {
         this.pid = pid;
-        this.startTime = System.currentTimeMillis();
+        this.clock = clock;
+        this.random = random;
+        this.startTime = clock.millis();
+        this.lastInstability = startTime;
+        // seq doubles as the version of this node's role announcements, so it must not start over when
+        // the PID is restarted
+        sequence.set(startTime * 1000);
         this.role = "Follower";
-        this.producer = new KafkaProducer<>(kafkaProps);
+        this.transport = transport;
+        this.metrics = new NodeMetrics(pid);
+        membership.setChangeListener(this::memberChanged);
+        leadership.setChangeListener(this::leadershipChanged);
+        publishView();
 
         System.out.println("New process PID = " + pid + " added as Follower");
     }
 
-    public KafkaProducer<String, String> getProducer() {
-        return producer;
+    // watch only k successors on a consistent-hash ring instead of every member (see MonitorRing)
+    public void enableMonitorRing(int k) {
+        monitorRing = new MonitorRing(pid, k, membership);
+    }
+
+    public MonitorRing getMonitorRing() {
+        return monitorRing;
+    }
+
+    public AntiEntropy getAntiEntropy() {
+        return antiEntropy;
+    }
+
+    public Clock getClock() {
+        return clock;
+    }
+
+    public Random getRandom() {
+        return random;
+    }
+
+    public EventLog getEvents() {
+        return events;
+    }
+
+    public void setEventLog(EventLog events) {
+        this.events = events;
+    }
+
+    // joined / suspected / dead / role-changed events; subscribe instead of polling the lists
+    public MembershipEvents getMembershipEvents() {
+        return membershipEvents;
+    }
+
+    // the detectors call this when they start probing pid
+    public void suspected(int p) {
+        membershipEvent(MembershipEvent.Type.SUSPECTED, p, roleOf(p));
+    }
+
+    private void membershipEvent(MembershipEvent.Type type, int p, Role r) {
+        membershipEvents.publish(type, clock.millis(), pid, p, r, term);
+    }
+
+    private Role roleOf(int p) {
+        return Role.fromLabel(roleMap.getOrDefault(p, "Follower"));
+    }
+
+    // stamps the event with this node's PID and clock; never blocks, may be dropped (see EventLog)
+    public void event(EventType type, int subject, Role role) {
+        events.emit(type, clock.millis(), pid, subject, role, term, 0, 0, 0, 0, 0);
+    }
+
+    public void event(EventType type, int subject, Role role, int a, int b, int c, int d, double score) {
+        events.emit(type, clock.millis(), pid, subject, role, term, a, b, c, d, score);
+    }
+
+    // restores the state persisted by an earlier run of this PID under dir and logs every later change,
+    // so a restart resumes with the last known members and leaders instead of an empty view
+    public void enablePersistence(Path dir) throws IOException {
+        StateLog log = new StateLog(this, dir, 4096);
+        int restored = log.restore();
+        stateLog = log;
+        if (restored > 0) {
+            System.out.println("Process " + pid + " restored " + membership.aliveCount() + " alive members, term "
+                    + term + " and BossList=" + leadership + " from " + dir);
+        }
+    }
+
+    // called by StateLog.restore() before any component runs
+    void restoreState(int restoredTerm, Map<Integer, Integer> members, Map<Integer, Role> roles,
+            List<LeadershipTable.Entry> leaders) {
+        synchronized (this) {
+            term = Math.max(term, restoredTerm);
+        }
+        long now = clock.millis();
+        for (Map.Entry<Integer, Integer> e : members.entrySet()) {
+            int p = e.getKey();
+            if ((e.getValue() & 2) != 0) {
+                membership.markDead(p);
+            }
+            if ((e.getValue() & 1) != 0) {
+                membership.markAlive(p);
+                // counted as just heard from, the detector drops the ones that stay silent
+                membership.recordHeartbeat(p, now);
+            }
+        }
+        for (Map.Entry<Integer, Role> e : roles.entrySet()) {
+            if (e.getKey() != pid) {
+                roleMap.put(e.getKey(), e.getValue().label());
+            }
+        }
+        for (LeadershipTable.Entry e : leaders) {
+            leadership.put(e.getPid(), e.getRole(), e.getLiveness());
+        }
+        // this node's own role is not resumed: the cluster may have failed over meanwhile, so it comes back
+        // as a Follower (as from StateTopic) and learns its role from the current Boss's lease and BossList
+    }
+
+    // roleMap writes go through here so they are persisted
+    public void putRole(int p, String label) {
+        String previous = roleMap.put(p, label);
+        viewChanges.incrementAndGet();
+        if (!label.equals(previous == null ? "Follower" : previous)) {
+            membershipEvent(MembershipEvent.Type.ROLE_CHANGED, p, Role.fromLabel(label));
+        }
+        StateLog log = stateLog;
+        if (log != null) {
+            log.role(p, Role.fromLabel(label));
+        }
+    }
+
+    private void termChanged() {
+        viewChanges.incrementAndGet();
+        StateLog log = stateLog;
+        if (log != null) {
+            log.term(term);
+        }
+    }
+
+    // called under the member's lock in MembershipTable, so only counts and hands off
+    private void memberChanged(int p, boolean alive, boolean dead, boolean wasAlive, boolean wasDead) {
+        viewChanges.incrementAndGet();
+        if (dead != wasDead) {
+            antiEntropy.memberChanged(p, dead, clock.millis());
+        }
+        if (dead && !wasDead) {
+            membershipEvent(MembershipEvent.Type.DEAD, p, roleOf(p));
+        } else if (alive && !dead && !(wasAlive && !wasDead)) {
+            membershipEvent(MembershipEvent.Type.JOINED, p, roleOf(p));
+        }
+        StateLog log = stateLog;
+        if (log != null) {
+            log.member(p, alive, dead);
+        }
+    }
+
+    private void leadershipChanged(LeadershipTable.Snapshot snapshot) {
+        viewChanges.incrementAndGet();
+        StateLog log = stateLog;
+        if (log != null) {
+            log.leadership(snapshot);
+        }
+    }
+
+    // consistent, immutable view as of the last publishView(); one volatile read
+    public ClusterView getClusterView() {
+        return view;
+    }
+
+    // called by the components at the end of each batch of changes (a poll, a control message, a
+    // detector round); a no-op unless something changed since the last publish
+    public void publishView() {
+        long changes = viewChanges.get();
+        if (changes == viewPublished) {
+            return;
+        }
+        synchronized (viewLock) {
+            changes = viewChanges.get();
+            if (changes == viewPublished) {
+                return;
+            }
+            int[] alive = toSortedArray(membership.aliveList());
+            int[] dead = toSortedArray(membership.deathList());
+            Map<Integer, Role> roles = new HashMap<>();
+            for (Map.Entry<Integer, String> e : roleMap.entrySet()) {
+                roles.put(e.getKey(), Role.fromLabel(e.getValue()));
+            }
+            ClusterView previous = view;
+            view = new ClusterView(previous == null ? 0 : previous.getVersion() + 1, clock.millis(), pid,
+                    Role.fromLabel(role), term, alive, dead, roles, leadership.snapshot());
+            // a change that raced with the copy bumped the counter again, the next batch picks it up
+            viewPublished = changes;
+        }
+    }
+
+    private static int[] toSortedArray(List<Integer> pids) {
+        int[] result = new int[pids.size()];
+        int n = 0;
+        for (int p : pids) {
+            if (n == result.length) {
+                result = Arrays.copyOf(result, n * 2 + 1);
+            }
+            result[n++] = p;
+        }
+        result = n == result.length ? result : Arrays.copyOf(result, n);
+        Arrays.sort(result);
+        return result;
+    }
+
+    public Transport getTransport() {
+        return transport;
+    }
+
+    // every outbound message goes through here so it carries this node's sequence number and term,
+    // and is tracked on its send lane (heartbeat / control, see Transport.Lane)
+    public void send(String topic, Message msg) {
+        send(topic, msg, null);
+    }
+
+    public void send(String topic, Message msg, Transport.Callback callback) {
+        if (!topic.startsWith(INBOX_PREFIX)) {
+            // only broadcasts stand in for a heartbeat (see HeartbeatSender); a probe or a digest to one
+            // peer leaves every other node without word from this one
+            lastSendTime = clock.millis();
+        }
+        msg.setSeq(sequence.incrementAndGet()).setTerm(term);
+        Transport.Lane lane = Transport.Lane.of(msg.getType());
+        Transport.Callback tracked = metrics.lane(lane).track(callback);
+        try {
+            transport.send(lane, topic, msg, tracked);
+        } catch (RuntimeException e) {
+            tracked.onCompletion(e);
+            throw e;
+        }
+    }
+
+    // the latest word on a PID, kept on the compacted state topic for nodes that join later (see StateTopic)
+    private void publishState(int key, Message msg) {
+        msg.setSeq(sequence.incrementAndGet()).setTerm(term);
+        Transport.Callback tracked = metrics.lane(Transport.Lane.CONTROL).track(null);
+        try {
+            transport.publish(StateTopic.TOPIC, key, msg, tracked);
+        } catch (RuntimeException e) {
+            tracked.onCompletion(e);
+            throw e;
+        }
+    }
+
+    // point-to-point topic of a node, used for probes and anything else addressed to one PID
+    public static String inboxTopic(int pid) {
+        return INBOX_PREFIX + pid;
+    }
+
+    public NodeMetrics getMetrics() {
+        return metrics;
+    }
+
+    public long getLastSendTime() {
+        return lastSendTime;
+    }
+
+    public long getLastInstability() {
+        return lastInstability;
+    }
+
+    public void markUnstable() {
+        lastInstability = clock.millis();
     }
 
     // getters
@@ -39,20 +336,35 @@ public class ProcessNode {
         return role;
     }
 
+    public MembershipTable getMembership() {
+        return membership;
+    }
+
+    // live views over the membership table
     public List<Integer> getAliveList() {
-        return aliveList;
+        return membership.aliveList();
     }
 
     public List<Integer> getDeathList() {
-        return deathList;
+        return membership.deathList();
     }
 
     public Map<Integer, Double> getElectionScores() {
         return electionScores;
     }
 
+    public LeadershipTable getLeadership() {
+        return leadership;
+    }
+
+    // legacy "pid:role:status" form of the leadership table, a snapshot for display
     public List<String> getBossList() {
-        return bossList;
+        LeadershipTable.Snapshot s = leadership.snapshot();
+        List<String> list = new ArrayList<>(s.size());
+        for (int i = 0; i < s.size(); i++) {
+            list.add(s.get(i).toString());
+        }
+        return list;
     }
 
     public long getStartTime() {
@@ -65,8 +377,11 @@ public class ProcessNode {
 
     // setters
     public synchronized void setRole(String newRole) {
+        if (!newRole.equals(role)) {
+            markUnstable();
+        }
         this.role = newRole;
-        roleMap.put(pid, newRole);
+        putRole(pid, newRole);
         announceRoleChange(newRole);
         // System.out.println("Process " + pid + " role set to " + newRole);
     }
@@ -76,6 +391,7 @@ public class ProcessNode {
         // System.out
         // .println("Process " + pid + " received promotion signal - Dead: PID " +
         // deadPid + " Role: " + deadRole);
+        markUnstable();
 
         if (deadRole.equals("Deputy2")) {
             if (role.equals("Follower")) {
@@ -83,7 +399,7 @@ public class ProcessNode {
                 electNewDeputy2();
             }
         } else if (deadRole.equals("Deputy1")) {
-            if (role.equals("Deputy2")) {
+            if (role.equals("Deputy2") && !heldByOther(Role.DEPUTY1, deadPid)) {
                 setRole("Deputy1");
                 // หา Follower ใหม่มาเป็น Deputy2
                 electNewDeputy2();
@@ -92,7 +408,8 @@ public class ProcessNode {
                 electNewDeputy2();
             }
         } else if (deadRole.equals("Boss")) {
-            if (role.equals("Deputy1")) {
+            // a Deputy1 that was only just promoted by the new Boss must not take over a second time
+            if (role.equals("Deputy1") && !heldByOther(Role.BOSS, deadPid)) {
                 setRole("Boss");
                 // ให้ Deputy2 เลื่อนขึ้นเป็น Deputy1
                 promoteDeputy2ToDeputy1();
@@ -106,85 +423,149 @@ public class ProcessNode {
             }
         }
 
-        // อัปเดต bossList
-        updateBossListAfterDeath(deadPid, deadRole);
+        // อัปเดต leadership table
+        leadership.markDead(deadPid, Role.fromLabel(deadRole));
+    }
+
+    // true if a live member other than deadPid and this node already holds role,
+    // i.e. the failover for this death has already been done by someone else
+    private boolean heldByOther(Role r, int deadPid) {
+        LeadershipTable.Snapshot s = leadership.snapshot();
+        for (int i = 0; i < s.size(); i++) {
+            LeadershipTable.Entry e = s.get(i);
+            if (e.getRole() == r && e.isAlive() && e.getPid() != deadPid && e.getPid() != pid) {
+                return true;
+            }
+        }
+        return false;
     }
 
     private void promoteDeputy2ToDeputy1() {
         // ส่งสัญญาณให้ Deputy2 เลื่อนขึ้นเป็น Deputy1
-        String msg = "PROMOTE:Deputy2_TO_Deputy1";
-        producer.send(new ProducerRecord<>("promotion-topic", msg));
+        send("promotion-topic", new Message(MessageType.PROMOTE_DEPUTY2, pid));
     }
 
     private void electNewDeputy2() {
         // เริ่มการเลือกตั้ง Deputy2 ใหม่
-        String msg = "ELECT_DEPUTY2:REQUEST";
-        producer.send(new ProducerRecord<>("election-deputy-topic", msg));
-    }
-
-    private void updateBossListAfterDeath(int deadPid, String deadRole) {
-        // อัปเดต bossList หลังจากมีคนตาย
-        for (int i = 0; i < bossList.size(); i++) {
-            String entry = bossList.get(i);
-            String[] parts = entry.split(":");
-            if (parts.length >= 3) {
-                int entryPid = Integer.parseInt(parts[0]);
-                String entryRole = parts[1];
-
-                if (entryPid == deadPid && entryRole.equals(deadRole)) {
-                    // เปลี่ยนสถานะเป็น dead
-                    bossList.set(i, deadPid + ":" + deadRole + ":dead");
-                    break;
-                }
-            }
-        }
+        send("election-deputy-topic", new Message(MessageType.ELECT_DEPUTY2_REQUEST, pid));
     }
 
     // Election
-    public void startElection() {
-        double uptimeScore = (System.currentTimeMillis() - startTime) / 1000.0;
-        double loadScore = new Random().nextDouble() * 10;
+    // Each round belongs to a term. Starting one moves to the next term; every node that hears an
+    // ELECTION for a newer term joins it with its own score. The round resolves once every alive
+    // member has scored or at its deadline (see Listener), so failover never waits on a lost score.
+    // returns false if a round is already open
+    public synchronized boolean startElection() {
+        if (electionDeadline != 0) {
+            return false;
+        }
+        openElection(term + 1, clock.millis());
+        event(EventType.ELECTION_STARTED, pid, null, 0, 0, 0, 0, electionScores.get(pid));
+        return true;
+    }
+
+    // an ELECTION for term t arrived: joins the round if t is newer,
+    // false if t is older or its round has already been resolved
+    public synchronized boolean joinElection(int t, long now) {
+        if (t < term || (t == term && electionDeadline == 0)) {
+            return false;
+        }
+        if (t > term) {
+            openElection(t, now);
+        }
+        return true;
+    }
+
+    private void openElection(int t, long now) {
+        markUnstable();
+        term = t;
+        termChanged();
+        electionScores.clear();
+        electionDeadline = now + electionTimeout;
+        metrics.electionStarted(now);
+        double uptimeScore = (now - startTime) / 1000.0;
+        double loadScore = random.nextDouble() * 10;
         double score = uptimeScore * 0.6 + (10.0 - loadScore) * 0.4;
 
         electionScores.put(pid, score);
 
-        String msg = "ELECTION:" + pid + ":" + score;
-        producer.send(new ProducerRecord<>("election-topic", msg));
-        System.out.println("Process " + pid + " sent score " + score + " via Kafka");
+        send("election-topic", new Message(MessageType.ELECTION, pid).setScore(score));
     }
 
-    public void announceDeath(int deadPid, String deadRole) {
-        // mark dead in bossList
-        String newRole = deadRole;
-        for (int i = 0; i < bossList.size(); i++) {
-            String[] parts = bossList.get(i).split(":");
-            int pidInList = Integer.parseInt(parts[0]);
-            String roleInList = parts[1];
-            if (pidInList == deadPid) {
-                if (roleInList.equals("Boss")) {
-                    newRole = "Ex-Boss";
-                    bossList.set(i, pidInList + ":Ex-Boss:dead");
-                } else if (roleInList.equals("Deputy1")) {
-                    newRole = "Ex-Deputy1";
-                    bossList.set(i, pidInList + ":Ex-Deputy1:dead");
-                } else if (roleInList.equals("Deputy2")) {
-                    newRole = "Ex-Deputy2";
-                    bossList.set(i, pidInList + ":Ex-Deputy2:dead");
-                }
-            }
+    // any other control message: a newer term means that election already finished elsewhere,
+    // so an open round here is abandoned; false if t is older than this node's term
+    public synchronized boolean observeTerm(int t) {
+        if (t < term) {
+            return false;
+        }
+        if (t > term) {
+            term = t;
+            termChanged();
+            electionDeadline = 0;
+            electionScores.clear();
         }
-        String msg = "DEAD:" + deadPid + ":" + newRole;
-        producer.send(new ProducerRecord<>("dead-topic", msg));
+        return true;
+    }
+
+    // called once the round's result has been applied
+    public synchronized void closeElection() {
+        electionDeadline = 0;
+        electionScores.clear();
+    }
+
+    // leader according to the Boss lease, -1 while no lease is valid (constant time, no messaging)
+    public int currentLeader() {
+        return leadership.currentLeader(clock.millis());
+    }
+
+    public long getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    public void setLeaseDuration(long leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    public int getTerm() {
+        return term;
+    }
+
+    public synchronized long getElectionDeadline() {
+        return electionDeadline;
+    }
+
+    public long getElectionTimeout() {
+        return electionTimeout;
+    }
+
+    public void setElectionTimeout(long electionTimeout) {
+        this.electionTimeout = electionTimeout;
+    }
+
+    public void announceDeath(int deadPid, String deadRole) {
+        // mark dead in the leadership table (Boss -> Ex-Boss, ...)
+        Role retired = leadership.retire(deadPid);
+        Role newRole = retired != null ? retired : Role.fromLabel(deadRole);
+        Message msg = new Message(MessageType.DEAD, pid).setSubject(deadPid).setRole(newRole);
+        send("dead-topic", msg);
+        publishState(deadPid, msg);
 
     }
 
     public void announceRoleChange(String newRole) {
-        String msg = "ROLECHANGE:" + pid + ":" + newRole;
-        producer.send(new ProducerRecord<>("rolechange-topic", msg));
+        Message msg = new Message(MessageType.ROLE_CHANGE, pid).setRole(Role.fromLabel(newRole));
+        send("rolechange-topic", msg);
+        antiEntropy.record(pid, msg.getSeq(), msg.getTerm());
+        publishState(pid, msg);
         // System.out.println("Kafka send -> " + msg);
     }
 
     public void closeProducer() {
-        producer.close();
+        transport.close();
+        membershipEvents.close();
+        StateLog log = stateLog;
+        if (log != null) {
+            log.close();
+        }
     }
 }
\ No newline at end of file
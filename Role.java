@@ -0,0 +1,69 @@
+package com.example;
+
+// code() is the value on the wire and in StateLog, fixed per constant so reordering the enum cannot
+// change either format
+public enum Role {
+    FOLLOWER(0, "Follower"),
+    BOSS(1, "Boss"),
+    DEPUTY1(2, "Deputy1"),
+    DEPUTY2(3, "Deputy2"),
+    EX_BOSS(4, "Ex-Boss"),
+    EX_DEPUTY1(5, "Ex-Deputy1"),
+    EX_DEPUTY2(6, "Ex-Deputy2");
+
+    private static final Role[] VALUES = values();
+    private static final Role[] BY_CODE = new Role[7];
+
+    static {
+        for (Role r : VALUES) {
+            BY_CODE[r.code] = r;
+        }
+    }
+
+    private final byte code;
+    private final String label;
+
+    Role(int code, String label) {
+        this.code = (byte) code;
+        this.label = label;
+    }
+
+    public String label() {
+        return label;
+    }
+
+    public boolean isLeadership() {
+        return this == BOSS || this == DEPUTY1 || this == DEPUTY2;
+    }
+
+    // role a leader is listed with after it has died
+    public Role retired() {
+        switch (this) {
+            case BOSS:
+                return EX_BOSS;
+            case DEPUTY1:
+                return EX_DEPUTY1;
+            case DEPUTY2:
+                return EX_DEPUTY2;
+            default:
+                return this;
+        }
+    }
+
+    public byte code() {
+        return code;
+    }
+
+    public static Role fromCode(int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : null;
+    }
+
+    public static Role fromLabel(String label) {
+        for (Role r : VALUES) {
+            if (r.label.equals(label)) {
+                return r;
+            }
+        }
+        return FOLLOWER;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,332 @@
+package com.example;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.util.*;
+
+// Discrete-event simulation of a whole cluster on virtual time. Every node runs as NodeExecutor tasks on
+// the calling thread, the clock jumps straight to the next due event, and all randomness comes from one
+// seed, so a failover scenario takes milliseconds of real time and the same seed replays it exactly.
+// Crashes, partitions, delays and loss are scripted with at(...) or called between runFor(...) steps.
+public class Simulation implements Clock, NodeExecutor.Scheduler, InMemoryBus.Network {
+    // virtual time starts at a realistic epoch, 0 means "never" in several tables
+    public static final long START = 1_700_000_000_000L;
+
+    private static final class Event implements NodeExecutor.Scheduled {
+        final long at;
+        final long order;
+        final Runnable action;
+        boolean cancelled;
+
+        Event(long at, long order, Runnable action) {
+            this.at = at;
+            this.order = order;
+            this.action = action;
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+    }
+
+    // the components of one simulated node
+    public static final class Node {
+        private final ProcessNode process;
+        private final HeartbeatSender heartbeat;
+        private final Listener listener;
+        private final FailureDetector detector;
+        private boolean crashed;
+
+        private Node(ProcessNode process, HeartbeatSender heartbeat, Listener listener, FailureDetector detector) {
+            this.process = process;
+            this.heartbeat = heartbeat;
+            this.listener = listener;
+            this.detector = detector;
+        }
+
+        public ProcessNode getProcess() {
+            return process;
+        }
+
+        public Listener getListener() {
+            return listener;
+        }
+
+        public boolean isCrashed() {
+            return crashed;
+        }
+    }
+
+    // ties broken by insertion order, so equal-time events always run in the same order
+    private final PriorityQueue<Event> events = new PriorityQueue<>(
+            Comparator.comparingLong((Event e) -> e.at).thenComparingLong(e -> e.order));
+    private final Random random;
+    private final InMemoryBus bus = new InMemoryBus();
+    private final NodeExecutor executor = new NodeExecutor(this, this);
+    private final Map<Integer, Node> nodes = new LinkedHashMap<>();
+    private final Map<InMemoryTransport, Integer> owners = new IdentityHashMap<>();
+    // partition side per PID, messages only pass between PIDs on the same side; empty when healed
+    private final Map<Integer, Integer> sides = new HashMap<>();
+    private long minDelay;
+    private long maxDelay;
+    private double lossRate;
+    private long now = START;
+    private long order;
+    private final EventLog eventLog;
+
+    public Simulation(long seed) {
+        this(seed, EventLog.discard());
+    }
+
+    // events carry virtual time; a log that echoes them keeps its own writer thread
+    public Simulation(long seed, EventLog events) {
+        this.random = new Random(seed);
+        this.eventLog = events;
+        bus.setNetwork(this);
+    }
+
+    @Override
+    public long millis() {
+        return now;
+    }
+
+    // virtual ms since the simulation started
+    public long elapsed() {
+        return now - START;
+    }
+
+    @Override
+    public NodeExecutor.Scheduled schedule(Runnable task, long at) {
+        Event e = new Event(Math.max(at, now), order++, task);
+        events.add(e);
+        return e;
+    }
+
+    @Override
+    public void shutdown() {
+        events.clear();
+    }
+
+    // scripted action at the given virtual ms since start
+    public void at(long elapsedMillis, Runnable action) {
+        schedule(action, START + elapsedMillis);
+    }
+
+    // processes every event due in the next millis of virtual time
+    public void runFor(long millis) {
+        long until = now + millis;
+        while (!events.isEmpty() && events.peek().at <= until) {
+            Event e = events.poll();
+            if (e.cancelled) {
+                continue;
+            }
+            now = e.at;
+            e.action.run();
+        }
+        now = until;
+    }
+
+    // starts a node in heartbeat mode, with its own Random drawn from the simulation seed
+    public Node addNode(int pid) {
+        InMemoryTransport transport = bus.connect();
+        owners.put(transport, pid);
+        ProcessNode process = new ProcessNode(pid, transport, this, new Random(random.nextLong()));
+        process.setEventLog(eventLog);
+        Listener listener = new Listener(process);
+        Node node = new Node(process, new HeartbeatSender(process), listener, new FailureDetector(process, listener));
+        nodes.put(pid, node);
+        node.listener.start(executor);
+        node.heartbeat.start(executor);
+        node.detector.start(executor);
+        return node;
+    }
+
+    // stops all components of pid at once, as Main does to simulate a death
+    public void crash(int pid) {
+        Node node = nodes.get(pid);
+        if (node == null || node.crashed) {
+            return;
+        }
+        node.crashed = true;
+        node.heartbeat.shutdown();
+        node.listener.shutdown();
+        node.detector.shutdown();
+    }
+
+    // cuts the given PIDs off from everyone else until heal()
+    public void partition(int... side) {
+        sides.clear();
+        for (int pid : side) {
+            sides.put(pid, 1);
+        }
+    }
+
+    public void heal() {
+        sides.clear();
+    }
+
+    // every delivery is delayed by a uniform draw from [min, max] ms
+    public void setDelay(long min, long max) {
+        this.minDelay = min;
+        this.maxDelay = Math.max(min, max);
+    }
+
+    public void setLossRate(double lossRate) {
+        this.lossRate = lossRate;
+    }
+
+    @Override
+    public boolean deliver(InMemoryTransport to, String topic, Message message) {
+        Integer receiver = owners.get(to);
+        if (receiver == null) {
+            return to.deliver(topic, message);
+        }
+        if (!sides.isEmpty() && !sides.getOrDefault(message.getPid(), 0).equals(sides.getOrDefault(receiver, 0))) {
+            return true;
+        }
+        if (lossRate > 0 && random.nextDouble() < lossRate) {
+            return true;
+        }
+        long delay = minDelay + (maxDelay > minDelay ? (long) (random.nextDouble() * (maxDelay - minDelay + 1)) : 0);
+        if (delay == 0) {
+            return to.deliver(topic, message);
+        }
+        // the sender reuses its message, the copy is what arrives later
+        Message copy = new Message();
+        copy.copyFrom(message);
+        schedule(() -> to.deliver(topic, copy), now + delay);
+        return true;
+    }
+
+    public Collection<Node> getNodes() {
+        return nodes.values();
+    }
+
+    public Node getNode(int pid) {
+        return nodes.get(pid);
+    }
+
+    // PIDs of the running nodes that currently think they are Boss
+    public List<Integer> bosses() {
+        List<Integer> result = new ArrayList<>();
+        for (Node node : nodes.values()) {
+            if (!node.crashed && "Boss".equals(node.process.getRole())) {
+                result.add(node.process.getPid());
+            }
+        }
+        return result;
+    }
+
+    // Main's failover scenario, repeated over many seeds: start -Dsim.nodes nodes, crash the Boss once
+    // exactly one is elected, and measure how long the survivors take to agree on a new one.
+    // -Dsim.runs=N (default 1000) runs seeds -Dsim.seed .. seed+N-1, -Dsim.verbose=true keeps node output
+    // (useful with -Dsim.runs=1 to replay a failing seed), -Dsim.delay=MAX adds 0..MAX ms per delivery,
+    // -Dsim.sync=MS sets the anti-entropy period (default 5000, 0 turns it off).
+    public static void main(String[] args) {
+        int nodeCount = Integer.getInteger("sim.nodes", 5);
+        int runs = Integer.getInteger("sim.runs", 1000);
+        long firstSeed = Long.getLong("sim.seed", 1);
+        long maxDelay = Long.getLong("sim.delay", 0);
+        boolean verbose = Boolean.getBoolean("sim.verbose");
+        long syncPeriod = Long.getLong("sim.sync", 5000);
+
+        PrintStream out = System.out;
+        PrintStream err = System.err;
+        if (!verbose) {
+            PrintStream discard = new PrintStream(OutputStream.nullOutputStream());
+            System.setOut(discard);
+            System.setErr(discard);
+        }
+
+        Histogram election = new Histogram();
+        Histogram failover = new Histogram();
+        Totals totals = new Totals();
+        List<Long> failed = new ArrayList<>();
+        long started = System.nanoTime();
+        for (int run = 0; run < runs; run++) {
+            long seed = firstSeed + run;
+            if (!failover(seed, nodeCount, maxDelay, syncPeriod, verbose, election, failover, totals)) {
+                failed.add(seed);
+            }
+        }
+        double seconds = (System.nanoTime() - started) / 1e9;
+
+        System.setOut(out);
+        System.setErr(err);
+        System.out.printf("%d runs of %d nodes in %.1f s (%.0f runs/min)%n", runs, nodeCount, seconds,
+                runs / seconds * 60);
+        System.out.println("First election: " + election);
+        System.out.println("Failover: " + failover);
+        // a healthy run sends roughly one heartbeat per node and second and suspects nobody who is alive
+        System.out.println("Heartbeats sent: " + totals.heartbeatsSent + ", false suspicions: "
+                + totals.falseSuspicions);
+        if (failed.isEmpty()) {
+            System.out.println("All runs converged to a single Boss");
+        } else {
+            System.out.println(failed.size() + " runs failed, replay with -Dsim.runs=1 -Dsim.verbose=true -Dsim.seed="
+                    + failed.subList(0, Math.min(10, failed.size())));
+        }
+    }
+
+    // one scenario, false if the cluster did not settle on a single Boss before or after the crash
+    private static boolean failover(long seed, int nodeCount, long maxDelay, long syncPeriod, boolean verbose,
+            Histogram election, Histogram failover, Totals totals) {
+        EventLog events = verbose ? new EventLog(8192, null, 0, 0, true) : EventLog.discard();
+        Simulation sim = new Simulation(seed, events);
+        try {
+            return failover(sim, seed, nodeCount, maxDelay, syncPeriod, election, failover);
+        } finally {
+            for (Node node : sim.getNodes()) {
+                NodeMetrics metrics = node.getProcess().getMetrics();
+                totals.heartbeatsSent += metrics.getHeartbeatsSent();
+                totals.falseSuspicions += metrics.getFalseSuspicions();
+            }
+            events.close();
+        }
+    }
+
+    private static final class Totals {
+        long heartbeatsSent;
+        long falseSuspicions;
+    }
+
+    private static boolean failover(Simulation sim, long seed, int nodeCount, long maxDelay, long syncPeriod,
+            Histogram election, Histogram failover) {
+        sim.setDelay(0, maxDelay);
+        Random pids = new Random(seed);
+        Set<Integer> used = new HashSet<>();
+        while (used.size() < nodeCount) {
+            int pid = 100 + pids.nextInt(Math.max(900, nodeCount * 10));
+            if (used.add(pid)) {
+                sim.addNode(pid).getProcess().getAntiEntropy().setPeriod(syncPeriod);
+            }
+        }
+
+        long elected = settle(sim, 20000);
+        if (elected < 0) {
+            return false;
+        }
+        election.recordMillis(elected);
+
+        sim.crash(sim.bosses().get(0));
+        long recovered = settle(sim, 40000);
+        if (recovered < 0) {
+            return false;
+        }
+        failover.recordMillis(recovered);
+        return true;
+    }
+
+    // runs in 100 ms steps until exactly one running node is Boss, returns the virtual ms it took or -1
+    private static long settle(Simulation sim, long limit) {
+        long from = sim.elapsed();
+        while (sim.elapsed() - from < limit) {
+            sim.runFor(100);
+            if (sim.bosses().size() == 1) {
+                return sim.elapsed() - from;
+            }
+        }
+        return -1;
+    }
+}
\ No newline at end of file
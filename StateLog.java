@@ -0,0 +1,284 @@
+package com.example;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.*;
+import java.util.*;
+
+// Durable copy of a node's membership, role and leadership state so a restarted node resumes with a
+// warm view instead of waiting for heartbeats and an election.
+//
+// Changes are appended to a memory-mapped log (<dir>/node-<pid>.log) as fixed 16-byte records:
+//   kind:u8 aux:u8 reserved:u16 pid:i32 value:i32 check:i32
+//   TERM (value=term), MEMBER (aux=alive|dead<<1), ROLE (aux=role code),
+//   LEADERS (aux=count, followed by count LEADER records: aux=role code, value=liveness)
+// When the log is full the whole state is written to <dir>/node-<pid>.snapshot with the same records
+// and the log starts over under the next generation. The log header (magic:i32 reserved:i32
+// generation:i64) and every record check are tied to the generation, so a log left over from before
+// the latest snapshot is ignored and replay stops at the first torn or stale record.
+// Appends only happen on state transitions, never per heartbeat.
+public class StateLog {
+    private static final int MAGIC = 0x48424c47;
+    private static final int HEADER_SIZE = 16;
+    private static final int RECORD_SIZE = 16;
+
+    private static final byte TERM = 1;
+    private static final byte MEMBER = 2;
+    private static final byte ROLE = 3;
+    private static final byte LEADERS = 4;
+    private static final byte LEADER = 5;
+
+    private final ProcessNode node;
+    private final Path logPath;
+    private final Path snapshotPath;
+    private final FileChannel channel;
+    private final MappedByteBuffer log;
+    private long generation;
+    private long lastLeadershipVersion = -1;
+    private boolean closed;
+
+    public StateLog(ProcessNode node, Path dir, int capacityRecords) throws IOException {
+        this.node = node;
+        Files.createDirectories(dir);
+        this.logPath = dir.resolve("node-" + node.getPid() + ".log");
+        this.snapshotPath = dir.resolve("node-" + node.getPid() + ".snapshot");
+        this.channel = FileChannel.open(logPath, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE);
+        this.log = channel.map(FileChannel.MapMode.READ_WRITE, 0, HEADER_SIZE + (long) capacityRecords * RECORD_SIZE);
+    }
+
+    // loads the snapshot and replays the log into the node, then positions the log for appends;
+    // returns the number of records applied
+    public synchronized int restore() throws IOException {
+        State state = new State();
+        long snapshotGeneration = 0;
+        int applied = 0;
+        if (Files.exists(snapshotPath)) {
+            ByteBuffer buf = ByteBuffer.wrap(Files.readAllBytes(snapshotPath));
+            if (buf.remaining() >= HEADER_SIZE && buf.getInt(0) == MAGIC) {
+                snapshotGeneration = buf.getLong(8);
+                buf.position(HEADER_SIZE);
+                applied += replay(buf, snapshotGeneration, state);
+            }
+        }
+        if (log.getInt(0) == MAGIC && log.getLong(8) == snapshotGeneration) {
+            log.position(HEADER_SIZE);
+            applied += replay(log, snapshotGeneration, state);
+            generation = snapshotGeneration;
+            // log.position() is now just past the last valid record
+        } else {
+            // fresh, or already covered by the snapshot
+            generation = snapshotGeneration;
+            resetLog();
+        }
+        state.applyTo(node);
+        return applied;
+    }
+
+    public synchronized void term(int term) {
+        append(TERM, 0, 0, term);
+    }
+
+    public synchronized void member(int pid, boolean alive, boolean dead) {
+        append(MEMBER, (alive ? 1 : 0) | (dead ? 2 : 0), pid, 0);
+    }
+
+    public synchronized void role(int pid, Role role) {
+        append(ROLE, role.code(), pid, 0);
+    }
+
+    // listeners may report snapshots out of order, only newer versions are logged
+    public synchronized void leadership(LeadershipTable.Snapshot s) {
+        if (s.getVersion() <= lastLeadershipVersion) {
+            return;
+        }
+        lastLeadershipVersion = s.getVersion();
+        if (!fits(1 + s.size())) {
+            compact();
+            return;
+        }
+        append(LEADERS, s.size(), 0, 0);
+        for (int i = 0; i < s.size(); i++) {
+            LeadershipTable.Entry e = s.get(i);
+            append(LEADER, e.getRole().code(), e.getPid(), e.getLiveness().ordinal());
+        }
+    }
+
+    // writes the current state as a snapshot and starts an empty log under a new generation
+    public synchronized void compact() {
+        if (closed) {
+            return;
+        }
+        try {
+            long next = generation + 1;
+            ByteBuffer buf = ByteBuffer.allocate(HEADER_SIZE + snapshotRecords() * RECORD_SIZE);
+            buf.putInt(MAGIC).putInt(0).putLong(next);
+            int term = node.getTerm();
+            put(buf, next, TERM, 0, 0, term);
+            for (int pid : node.getMembership().aliveList()) {
+                put(buf, next, MEMBER, 1 | (node.getMembership().isDead(pid) ? 2 : 0), pid, 0);
+            }
+            for (int pid : node.getMembership().deathList()) {
+                if (!node.getMembership().isAlive(pid)) {
+                    put(buf, next, MEMBER, 2, pid, 0);
+                }
+            }
+            for (Map.Entry<Integer, String> e : node.getRoleMap().entrySet()) {
+                put(buf, next, ROLE, Role.fromLabel(e.getValue()).code(), e.getKey(), 0);
+            }
+            LeadershipTable.Snapshot s = node.getLeadership().snapshot();
+            put(buf, next, LEADERS, s.size(), 0, 0);
+            for (int i = 0; i < s.size(); i++) {
+                LeadershipTable.Entry e = s.get(i);
+                put(buf, next, LEADER, e.getRole().code(), e.getPid(), e.getLiveness().ordinal());
+            }
+            // the snapshot is complete on disk before the log is switched to its generation
+            Path tmp = snapshotPath.resolveSibling(snapshotPath.getFileName() + ".tmp");
+            try (FileChannel out = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                buf.flip();
+                while (buf.hasRemaining()) {
+                    out.write(buf);
+                }
+                out.force(true);
+            }
+            Files.move(tmp, snapshotPath, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            generation = next;
+            resetLog();
+        } catch (IOException e) {
+            System.err.println("Process " + node.getPid() + " failed to write state snapshot: " + e.getMessage());
+        }
+    }
+
+    public synchronized void close() {
+        if (closed) {
+            return;
+        }
+        log.force();
+        closed = true;
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // nothing left to flush
+        }
+    }
+
+    private int snapshotRecords() {
+        return 2 + node.getMembership().aliveCount() + node.getMembership().deadCount()
+                + node.getRoleMap().size() + node.getLeadership().snapshot().size() + 16;
+    }
+
+    private void resetLog() {
+        log.putInt(0, MAGIC);
+        log.putInt(4, 0);
+        log.putLong(8, generation);
+        log.position(HEADER_SIZE);
+    }
+
+    private boolean fits(int records) {
+        return log.remaining() >= records * RECORD_SIZE;
+    }
+
+    private void append(byte kind, int aux, int pid, int value) {
+        if (closed) {
+            return;
+        }
+        if (!fits(1)) {
+            // the snapshot already holds this change, it was applied before being logged
+            compact();
+            return;
+        }
+        put(log, generation, kind, aux, pid, value);
+    }
+
+    private static void put(ByteBuffer buf, long generation, byte kind, int aux, int pid, int value) {
+        buf.put(kind).put((byte) aux).putShort((short) 0).putInt(pid).putInt(value)
+                .putInt(check(generation, kind, aux, pid, value));
+    }
+
+    private static int check(long generation, int kind, int aux, int pid, int value) {
+        int h = (int) generation * 0x9E3779B1 ^ (int) (generation >>> 32);
+        h = (h ^ (kind << 8 | (aux & 0xff))) * 0x85EBCA6B;
+        h = (h ^ pid) * 0xC2B2AE35;
+        h = (h ^ value) * 0x9E3779B1;
+        return h ^ (h >>> 16) | 1;
+    }
+
+    // applies records from the buffer's position until the first invalid one, leaves the position there
+    private static int replay(ByteBuffer buf, long generation, State state) {
+        int applied = 0;
+        while (buf.remaining() >= RECORD_SIZE) {
+            int p = buf.position();
+            byte kind = buf.get(p);
+            int aux = buf.get(p + 1) & 0xff;
+            int pid = buf.getInt(p + 4);
+            int value = buf.getInt(p + 8);
+            if (kind == 0 || buf.getInt(p + 12) != check(generation, kind, aux, pid, value)) {
+                break;
+            }
+            if (kind == LEADERS) {
+                // all-or-nothing: a table cut short by a crash is skipped
+                if (buf.remaining() < (1 + aux) * RECORD_SIZE) {
+                    break;
+                }
+                List<LeadershipTable.Entry> entries = new ArrayList<>(aux);
+                boolean complete = true;
+                for (int i = 1; i <= aux && complete; i++) {
+                    int q = p + i * RECORD_SIZE;
+                    byte k = buf.get(q);
+                    int a = buf.get(q + 1) & 0xff;
+                    int entryPid = buf.getInt(q + 4);
+                    int liveness = buf.getInt(q + 8);
+                    Role role = Role.fromCode(a);
+                    complete = k == LEADER && role != null && liveness >= 0
+                            && liveness < LeadershipTable.Liveness.values().length
+                            && buf.getInt(q + 12) == check(generation, k, a, entryPid, liveness);
+                    if (complete) {
+                        entries.add(new LeadershipTable.Entry(entryPid, role,
+                                LeadershipTable.Liveness.values()[liveness]));
+                    }
+                }
+                if (!complete) {
+                    break;
+                }
+                state.leaders = entries;
+                buf.position(p + (1 + aux) * RECORD_SIZE);
+                applied += 1 + aux;
+                continue;
+            }
+            switch (kind) {
+                case TERM:
+                    state.term = value;
+                    break;
+                case MEMBER:
+                    state.members.put(pid, aux);
+                    break;
+                case ROLE:
+                    Role role = Role.fromCode(aux);
+                    if (role != null) {
+                        state.roles.put(pid, role);
+                    }
+                    break;
+                default:
+                    break;
+            }
+            buf.position(p + RECORD_SIZE);
+            applied++;
+        }
+        return applied;
+    }
+
+    // replayed state, applied to the node in one go
+    private static final class State {
+        int term;
+        final Map<Integer, Integer> members = new HashMap<>();
+        final Map<Integer, Role> roles = new HashMap<>();
+        List<LeadershipTable.Entry> leaders = Collections.emptyList();
+
+        void applyTo(ProcessNode node) {
+            node.restoreState(term, members, roles, leaders);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,71 @@
+package com.example;
+
+import java.time.Duration;
+import java.util.*;
+
+// Keyed, compacted membership-state topic. Every role a node announces for itself and every DEAD verdict is
+// also published here keyed by the PID it is about, so the topic retains the latest role and liveness per PID.
+// A node joining a running cluster reads it once before its detector starts, instead of coming up with an
+// empty BossList and calling an election that disrupts everyone. With Kafka, create the topic with
+// cleanup.policy=compact.
+final class StateTopic {
+    public static final String TOPIC = "membership-state-topic";
+    // the bootstrap read gives up after this, keeping whatever it has read
+    static final Duration READ_TIMEOUT = Duration.ofSeconds(2);
+
+    private final int self;
+    // same encoding as StateLog: bit 0 alive, bit 1 dead
+    private final Map<Integer, Integer> members = new HashMap<>();
+    private final Map<Integer, Role> roles = new HashMap<>();
+    private int term;
+
+    private StateTopic(int self) {
+        this.self = self;
+    }
+
+    // loads the current view into node, returns how many PIDs it knew about (0 for a new cluster)
+    static int bootstrap(ProcessNode node) {
+        StateTopic state = new StateTopic(node.getPid());
+        if (!node.getTransport().readCompacted(TOPIC, READ_TIMEOUT, state::apply)) {
+            System.err.println("Process " + node.getPid() + " read " + TOPIC + " only partially within "
+                    + READ_TIMEOUT.toMillis() + " ms");
+        }
+        if (state.members.isEmpty()) {
+            return 0;
+        }
+        List<LeadershipTable.Entry> leaders = new ArrayList<>();
+        for (Map.Entry<Integer, Role> e : state.roles.entrySet()) {
+            if (state.members.get(e.getKey()) == 1 && e.getValue().isLeadership()) {
+                leaders.add(new LeadershipTable.Entry(e.getKey(), e.getValue(), LeadershipTable.Liveness.ALIVE));
+            }
+        }
+        node.restoreState(state.term, state.members, state.roles, leaders);
+        return state.members.size();
+    }
+
+    // records arrive oldest first, a later record for the same PID replaces the earlier one
+    private void apply(String topic, Message msg) {
+        term = Math.max(term, msg.getTerm());
+        switch (msg.getType()) {
+            case ROLE_CHANGE:
+                put(msg.getPid(), 1, msg.getRole());
+                break;
+            case DEAD:
+                put(msg.getSubject(), 2, msg.getRole());
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void put(int pid, int flags, Role role) {
+        // this PID's own record is from an earlier life, it starts over as a Follower
+        if (pid == self) {
+            return;
+        }
+        members.put(pid, flags);
+        if (role != null) {
+            roles.put(pid, role);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,198 @@
+package com.example;
+
+import java.util.*;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.LongConsumer;
+
+// Hashed timer wheel of per-PID deadlines.
+// schedule() re-arms a PID in O(1); expire() only touches the buckets between the last call and now,
+// and await() parks the caller until the next non-empty bucket so an idle wheel costs nothing.
+public class TimerWheel {
+    private static final class Entry {
+        final int pid;
+        long deadline;
+        int bucket = -1;
+        Entry prev;
+        Entry next;
+
+        Entry(int pid) {
+            this.pid = pid;
+        }
+    }
+
+    private final long tickMillis;
+    private final Clock clock;
+    private final Entry[] buckets;
+    private final int mask;
+    private final IntMap<Entry> entries = new IntMap<>();
+    private long currentTick;
+    private int[] expired = new int[16];
+
+    private volatile Thread waiter;
+    private volatile long wakeAt = Long.MAX_VALUE;
+    // set when the owner runs as a NodeExecutor task rather than parking in await()
+    private volatile LongConsumer wakeup;
+
+    public TimerWheel(long tickMillis, int wheelSize) {
+        this(tickMillis, wheelSize, Clock.SYSTEM);
+    }
+
+    public TimerWheel(long tickMillis, int wheelSize, Clock clock) {
+        int size = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.tickMillis = tickMillis;
+        this.buckets = new Entry[size];
+        this.mask = size - 1;
+        this.clock = clock;
+        this.currentTick = clock.millis() / tickMillis;
+    }
+
+    public long getTickMillis() {
+        return tickMillis;
+    }
+
+    public void schedule(int pid, long deadline) {
+        synchronized (this) {
+            Entry e = entries.get(pid);
+            if (e == null) {
+                e = new Entry(pid);
+                entries.put(pid, e);
+            } else {
+                unlink(e);
+            }
+            e.deadline = deadline;
+            link(e, Math.max(deadline / tickMillis, currentTick));
+        }
+        // wake the waiting thread if this deadline is earlier than the one it sleeps for
+        if (deadline < wakeAt) {
+            Thread w = waiter;
+            if (w != null) {
+                LockSupport.unpark(w);
+            }
+            LongConsumer c = wakeup;
+            if (c != null) {
+                c.accept(deadline);
+            }
+        }
+    }
+
+    public void setWakeup(LongConsumer wakeup) {
+        this.wakeup = wakeup;
+    }
+
+    public synchronized void cancel(int pid) {
+        Entry e = entries.remove(pid);
+        if (e != null) {
+            unlink(e);
+        }
+    }
+
+    public synchronized boolean isScheduled(int pid) {
+        return entries.containsKey(pid);
+    }
+
+    // removes every PID whose deadline is <= now and returns how many there were,
+    // read them back with expiredPid(i) before the next call
+    public synchronized int expire(long now) {
+        long targetTick = now / tickMillis;
+        if (targetTick < currentTick) {
+            return 0;
+        }
+        int count = 0;
+        long ticks = Math.min(targetTick - currentTick + 1, buckets.length);
+        for (long t = 0; t < ticks; t++) {
+            int b = (int) ((currentTick + t) & mask);
+            Entry e = buckets[b];
+            while (e != null) {
+                Entry next = e.next;
+                if (e.deadline <= now) {
+                    unlink(e);
+                    entries.remove(e.pid);
+                    if (count == expired.length) {
+                        expired = Arrays.copyOf(expired, count * 2);
+                    }
+                    expired[count++] = e.pid;
+                }
+                e = next;
+            }
+        }
+        currentTick = targetTick;
+        return count;
+    }
+
+    public synchronized int expiredPid(int i) {
+        return expired[i];
+    }
+
+    // parks until the next non-empty bucket, until the given time, or until an earlier deadline is scheduled
+    public void await(long until) throws InterruptedException {
+        long next = Math.min(until, nextBucketTime());
+        long now = clock.millis();
+        if (next > now) {
+            waiter = Thread.currentThread();
+            wakeAt = next;
+            try {
+                // re-check after publishing wakeAt so a concurrent schedule() is not missed
+                next = Math.min(next, nextBucketTime());
+                if (next > now) {
+                    LockSupport.parkNanos(this, (next - now) * 1_000_000L);
+                }
+            } finally {
+                waiter = null;
+                wakeAt = Long.MAX_VALUE;
+            }
+        }
+        if (Thread.interrupted()) {
+            throw new InterruptedException();
+        }
+    }
+
+    // non-blocking counterpart of await() for task mode: returns when the caller should run next and
+    // calls the wakeup callback if an earlier deadline is scheduled before then
+    public long nextWake(long until) {
+        wakeAt = Math.min(until, nextBucketTime());
+        // re-check after publishing wakeAt so a concurrent schedule() is not missed
+        long next = Math.min(wakeAt, nextBucketTime());
+        wakeAt = next;
+        return next;
+    }
+
+    private synchronized long nextBucketTime() {
+        if (entries.isEmpty()) {
+            return Long.MAX_VALUE;
+        }
+        for (int t = 0; t < buckets.length; t++) {
+            if (buckets[(int) ((currentTick + t) & mask)] != null) {
+                return (currentTick + t + 1) * tickMillis;
+            }
+        }
+        return (currentTick + buckets.length) * tickMillis;
+    }
+
+    private void link(Entry e, long tick) {
+        int b = (int) (tick & mask);
+        e.bucket = b;
+        e.prev = null;
+        e.next = buckets[b];
+        if (e.next != null) {
+            e.next.prev = e;
+        }
+        buckets[b] = e;
+    }
+
+    private void unlink(Entry e) {
+        if (e.bucket < 0) {
+            return;
+        }
+        if (e.prev != null) {
+            e.prev.next = e.next;
+        } else {
+            buckets[e.bucket] = e.next;
+        }
+        if (e.next != null) {
+            e.next.prev = e.prev;
+        }
+        e.prev = null;
+        e.next = null;
+        e.bucket = -1;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,82 @@
+package com.example;
+
+import java.time.Duration;
+import java.util.Collection;
+
+// Abstraction over how a node sends and receives control messages.
+// ProcessNode owns the sending side, Listener drives the receiving side.
+public interface Transport {
+
+    interface Handler {
+        // message is only valid until this method returns
+        void onMessage(String topic, Message message);
+    }
+
+    interface Callback {
+        // exception is null when the message was handed off successfully
+        void onCompletion(Exception exception);
+
+        // what transports call: startedAt is System.nanoTime() when send was called, so one callback
+        // instance can time any number of sends in flight (see LaneStats)
+        default void onCompletion(Exception exception, long startedAt) {
+            onCompletion(exception);
+        }
+    }
+
+    // Liveness traffic and the control plane are sent separately so heartbeats never queue behind an
+    // election burst: the HEARTBEAT lane is tuned for latency and may drop (the next heartbeat
+    // replaces a lost one), the CONTROL lane is acknowledged and keeps per-node order.
+    enum Lane {
+        HEARTBEAT,
+        CONTROL;
+
+        public static Lane of(MessageType type) {
+            switch (type) {
+                case HEARTBEAT:
+                case LEASE:
+                case JOIN:
+                case PING:
+                case ACK:
+                case PING_REQ:
+                    return HEARTBEAT;
+                default:
+                    return CONTROL;
+            }
+        }
+    }
+
+    // the transport does not keep a reference to message once send returns; callback may be null
+    void send(Lane lane, String topic, Message message, Callback callback);
+
+    default void send(String topic, Message message) {
+        send(Lane.of(message.getType()), topic, message, null);
+    }
+
+    default void send(String topic, Message message, Callback callback) {
+        send(Lane.of(message.getType()), topic, message, callback);
+    }
+
+    // keyed send to a compacted topic, which keeps only the latest message per key (always on the CONTROL lane)
+    void publish(String topic, int key, Message message, Callback callback);
+
+    // hands every message retained on a compacted topic to handler, oldest first, on the calling thread;
+    // returns false if it could not catch up with the end of the topic within timeout
+    boolean readCompacted(String topic, Duration timeout, Handler handler);
+
+    void subscribe(Collection<String> topics);
+
+    // blocks up to timeout for messages and hands each one to handler on the calling thread
+    void poll(Duration timeout, Handler handler) throws InterruptedException;
+
+    // called whenever a message arrives, so a Listener running as a NodeExecutor task can be woken instead
+    // of polling on a timer; returns false if this transport cannot notify (the caller keeps polling)
+    default boolean setReadListener(Runnable listener) {
+        return false;
+    }
+
+    // stop receiving (called by Listener when it exits)
+    void unsubscribe();
+
+    // release the sending side (called by ProcessNode.closeProducer)
+    void close();
+}
\ No newline at end of file
@@ -0,0 +1,83 @@
+package com.example;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+// Read-only HTTP endpoint on the loopback interface for the ClusterViews of the nodes in this JVM:
+//   GET /view        every node's view as a JSON array
+//   GET /view/<pid>  one node's view
+// Each request reads the published snapshots only, it never takes a lock the nodes write under.
+public class ViewServer {
+    private final HttpServer server;
+    private final List<ProcessNode> nodes;
+
+    public ViewServer(int port, List<ProcessNode> nodes) throws IOException {
+        this.nodes = nodes;
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.createContext("/view", this::handle);
+    }
+
+    public void start() {
+        server.start();
+    }
+
+    public int getPort() {
+        return server.getAddress().getPort();
+    }
+
+    public void stop() {
+        server.stop(0);
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                reply(exchange, 405, "{\"error\":\"read-only, use GET\"}");
+                return;
+            }
+            String path = exchange.getRequestURI().getPath();
+            if (path.equals("/view") || path.equals("/view/")) {
+                StringBuilder s = new StringBuilder("[");
+                for (ProcessNode node : nodes) {
+                    if (s.length() > 1) {
+                        s.append(',');
+                    }
+                    s.append(node.getClusterView().toJson());
+                }
+                reply(exchange, 200, s.append(']').toString());
+                return;
+            }
+            int pid;
+            try {
+                pid = Integer.parseInt(path.substring("/view/".length()));
+            } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+                reply(exchange, 400, "{\"error\":\"expected /view/<pid>\"}");
+                return;
+            }
+            for (ProcessNode node : nodes) {
+                if (node.getPid() == pid) {
+                    reply(exchange, 200, node.getClusterView().toJson());
+                    return;
+                }
+            }
+            reply(exchange, 404, "{\"error\":\"no node " + pid + " in this process\"}");
+        } finally {
+            exchange.close();
+        }
+    }
+
+    private static void reply(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(bytes);
+        }
+    }
+}
\ No newline at end of file
@@ -0,0 +1,60 @@
+package com.example;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Wire format encode / decode. Cost depends on the message type, not on membership size, so this one
+// is parameterised by type; PING carries the maximum number of piggybacked gossip updates.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodecBenchmark {
+
+    @Param({ "HEARTBEAT", "DEAD", "ELECTION", "PING" })
+    MessageType type;
+
+    private final Message msg = new Message();
+    private final Message into = new Message();
+    private final ByteBuffer buffer = ByteBuffer.allocate(MessageCodec.MAX_SIZE);
+    private byte[] bytes;
+
+    @Setup
+    public void setup() {
+        msg.reset(type, 123).setSeq(42).setSubject(456).setRole(Role.BOSS).setScore(3.5).setProbe(7);
+        if (type == MessageType.PING) {
+            for (int i = 0; i < Message.MAX_UPDATES; i++) {
+                msg.addUpdate(1000 + i, MemberState.ALIVE, i);
+            }
+        }
+        MessageCodec.encode(msg, buffer);
+        buffer.flip();
+        bytes = new byte[buffer.remaining()];
+        buffer.duplicate().get(bytes);
+    }
+
+    @Benchmark
+    public ByteBuffer encode() {
+        ByteBuffer buf = buffer;
+        buf.clear();
+        MessageCodec.encode(msg, buf);
+        buf.flip();
+        return buf;
+    }
+
+    // the Kafka consumer path (ByteArrayDeserializer)
+    @Benchmark
+    public Message decodeBytes() {
+        MessageCodec.decode(bytes, into);
+        return into;
+    }
+
+    @Benchmark
+    public Message decodeBuffer() {
+        MessageCodec.decode(buffer, into);
+        return into;
+    }
+}
\ No newline at end of file
@@ -0,0 +1,42 @@
+package com.example;
+
+import java.time.Duration;
+import java.util.Collection;
+
+// Transport that drops everything sent and never delivers anything, so a benchmark measures the node's
+// own work and not an inbox filling up behind it. Sends still complete their callback, as the in-memory
+// bus does.
+class DiscardTransport implements Transport {
+    @Override
+    public void send(Lane lane, String topic, Message message, Callback callback) {
+        if (callback != null) {
+            callback.onCompletion(null, System.nanoTime());
+        }
+    }
+
+    @Override
+    public void publish(String topic, int key, Message message, Callback callback) {
+        send(Lane.CONTROL, topic, message, callback);
+    }
+
+    @Override
+    public boolean readCompacted(String topic, Duration timeout, Handler handler) {
+        return true;
+    }
+
+    @Override
+    public void subscribe(Collection<String> topics) {
+    }
+
+    @Override
+    public void poll(Duration timeout, Handler handler) {
+    }
+
+    @Override
+    public void unsubscribe() {
+    }
+
+    @Override
+    public void close() {
+    }
+}
\ No newline at end of file
@@ -0,0 +1,59 @@
+package com.example;
+
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Listener.handleElection when the last score arrives: sort all scores and assign Boss / Deputies.
+// Each invocation first opens a round for the next term and refills the score table; that alone is
+// measured as a baseline to subtract. Both include the node's side of its sends (ELECTION when opening
+// the round, ROLE_CHANGE and its state-topic record when the result changes this node's role:
+// sequence, term, lane tracking), but no transport: the node sends into a DiscardTransport.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ElectionBenchmark {
+
+    @Param({ "4", "100", "1000", "10000", "100000" })
+    int members;
+
+    private ProcessNode node;
+    private Listener listener;
+    private Map<Integer, Double> scores;
+    private Message last;
+    private int term;
+
+    @Setup
+    public void setup() {
+        node = new ProcessNode(0, new DiscardTransport());
+        // resolve as soon as every score is in, not only at the deadline
+        node.setElectionTimeout(0);
+        listener = new Listener(node);
+        Random rnd = new Random(42);
+        scores = new HashMap<>();
+        for (int pid = 1; pid <= members; pid++) {
+            node.getMembership().markAlive(pid);
+            if (pid < members) {
+                scores.put(pid, rnd.nextDouble() * 100);
+            }
+        }
+        last = new Message(MessageType.ELECTION, members).setScore(rnd.nextDouble() * 100);
+    }
+
+    @Benchmark
+    public void handleElection() {
+        node.joinElection(++term, System.currentTimeMillis());
+        node.getElectionScores().putAll(scores);
+        listener.handleElection(last.setTerm(term));
+    }
+
+    @Benchmark
+    public void refillBaseline() {
+        node.joinElection(++term, System.currentTimeMillis());
+        node.getElectionScores().putAll(scores);
+        node.closeElection();
+    }
+}
\ No newline at end of file
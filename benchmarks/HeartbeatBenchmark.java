@@ -0,0 +1,45 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// Per-heartbeat cost on the Listener's polling thread: membership table, phi window, timer wheel
+// re-arm and link statistics, as dispatched for a numbered HEARTBEAT record.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HeartbeatBenchmark {
+
+    @Param({ "4", "100", "1000", "10000", "100000" })
+    int members;
+
+    private Listener listener;
+    private Message[] heartbeats;
+    private int next;
+    private long beat = 1;
+
+    @Setup
+    public void setup() {
+        ProcessNode node = new ProcessNode(0, new InMemoryBus().connect());
+        listener = new Listener(node);
+        heartbeats = new Message[members];
+        for (int i = 0; i < members; i++) {
+            heartbeats[i] = new Message(MessageType.HEARTBEAT, i + 1);
+            listener.dispatch("heartbeat-topic", heartbeats[i].setBeat(beat).setSentAt(System.currentTimeMillis()));
+        }
+    }
+
+    // one heartbeat from each member in turn, each member's beats numbered without gaps
+    @Benchmark
+    public void handleHeartbeat() {
+        if (next == 0) {
+            beat++;
+        }
+        Message msg = heartbeats[next];
+        next = next + 1 == members ? 0 : next + 1;
+        listener.dispatch("heartbeat-topic", msg.setBeat(beat).setSentAt(System.currentTimeMillis()));
+    }
+}
\ No newline at end of file
@@ -0,0 +1,46 @@
+package com.example;
+
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.*;
+
+// FailureDetector work per wake-up: the timer wheel sweep when nothing has expired, and the periodic
+// leadership check over the leadership table.
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SweepBenchmark {
+
+    @Param({ "4", "100", "1000", "10000", "100000" })
+    int members;
+
+    private FailureDetector detector;
+    private long now;
+
+    @Setup
+    public void setup() {
+        ProcessNode node = new ProcessNode(0, new InMemoryBus().connect());
+        Listener listener = new Listener(node);
+        detector = new FailureDetector(node, listener);
+        now = System.currentTimeMillis();
+        for (int pid = 1; pid <= members; pid++) {
+            listener.recordHeartbeat(pid, now);
+        }
+        node.getLeadership().replace(1, members > 1 ? 2 : 0, members > 2 ? 3 : 0);
+        // first round runs the leadership check, later rounds at the same instant only sweep
+        detector.round(now);
+    }
+
+    // a fixed clock keeps every deadline in the future, so this is the steady-state sweep
+    @Benchmark
+    public long sweep() {
+        return detector.round(now);
+    }
+
+    @Benchmark
+    public void checkLeadership() {
+        detector.checkLeadership();
+    }
+}
\ No newline at end of file